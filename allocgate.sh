@@ -0,0 +1,20 @@
+#!/bin/sh
+# Allocation regression gate: renders the invoice and each converter's
+# fixture under Java Flight Recorder and compares bytes allocated per
+# document with allocation-baseline.properties. Exits 1 if any path grew
+# by more than the tolerance, printing the top allocating frames either way.
+# Needs JDK 11 or newer.
+#
+#   ./allocgate.sh            check against the baseline
+#   ./allocgate.sh --update   record a new baseline after an intended change
+set -e
+cd "$(dirname "$0")"
+
+LIBS=$(ls lib/*.jar src/*.jar 2>/dev/null | tr '\n' ':')
+
+rm -rf build/gate
+mkdir -p build/gate
+javac -encoding UTF-8 -d build/gate -cp "$LIBS" src/*.java
+
+# A fixed heap so GC pauses are comparable between runs
+java -Xms512m -Xmx512m -cp "build/gate:$LIBS" AllocationGate allocation-baseline.properties "$@"
@@ -0,0 +1,40 @@
+#!/bin/sh
+# Builds the app into build/pdfgen.jar and creates an AppCDS archive
+# (build/pdfgen.jsa) for it and the lib/ jars, then compares startup with
+# and without the archive. Needs JDK 13 or newer and a display, since the
+# training run opens the window.
+#
+#   ./appcds.sh
+#
+# Only pdfwithfunc has the -Dpdfgen.exitAfterStartup training hook, so the
+# archive is built for it; other main classes can still use it, but only
+# the classes they share with pdfwithfunc are in it.
+#
+# Run the app with the archive:
+#   java -XX:SharedArchiveFile=build/pdfgen.jsa -cp "<classpath printed below>" pdfwithfunc
+#
+# Rebuild the archive whenever the code or the jars change; the JVM ignores
+# (with a warning) an archive that no longer matches the class path.
+set -e
+cd "$(dirname "$0")"
+
+MAIN=pdfwithfunc
+LIBS=$(ls lib/*.jar src/*.jar 2>/dev/null | tr '\n' ':')
+
+# CDS only archives classes from jars, so package the app as one
+rm -rf build/classes
+mkdir -p build/classes
+javac -encoding UTF-8 -d build/classes -cp "$LIBS" src/*.java
+jar cf build/pdfgen.jar -C build/classes .
+CP="build/pdfgen.jar:$LIBS"
+
+# Training run: start up, load the converters, exit, and dump every class loaded
+java -XX:ArchiveClassesAtExit=build/pdfgen.jsa -Dpdfgen.exitAfterStartup=true -cp "$CP" "$MAIN"
+
+echo "Startup without archive:"
+java -Xshare:auto -Dpdfgen.exitAfterStartup=true -cp "$CP" "$MAIN"
+echo "Startup with archive:"
+java -XX:SharedArchiveFile=build/pdfgen.jsa -Dpdfgen.exitAfterStartup=true -cp "$CP" "$MAIN"
+
+echo
+echo "Class path: $CP"
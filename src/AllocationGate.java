@@ -0,0 +1,357 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFTextBox;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Allocation regression gate for the invoice and file conversion paths.
+ *
+ * Each path renders a fixed fixture (built here, so it is the same on every
+ * machine) a few times to warm up, then several times on this thread under
+ * Java Flight Recorder. Bytes allocated per document come from the thread's
+ * exact allocation counter; GC pause time and the top allocating frames come
+ * from the recording. A path fails when it allocates more than the tolerance
+ * above its entry in the baseline file, and the run exits with status 1, so a
+ * build script can stop on it.
+ *
+ * Usage (needs JDK 11+ for JFR; see allocgate.sh):
+ *   java AllocationGate [baseline.properties] [--update]
+ *
+ * --update rewrites the baseline from this run, after an intended change.
+ */
+public class AllocationGate {
+    
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 10;
+    private static final int TOP_FRAMES = 8;
+    
+    // Allowed growth over the baseline before a path fails
+    private static final double DEFAULT_TOLERANCE = 0.15;
+    
+    /**
+     * One rendering of a fixture into a PDF
+     */
+    private interface Path {
+        void render(OutputStream out) throws Exception;
+    }
+    
+    /**
+     * What a path did over the measured runs
+     */
+    private static class Result {
+        long bytesPerDocument;
+        double pauseMillisPerDocument;
+        final Map<String, Long> frames = new HashMap<>();
+    }
+    
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        
+        File baselineFile = new File("allocation-baseline.properties");
+        boolean update = false;
+        for (String arg : args) {
+            if (arg.equals("--update")) {
+                update = true;
+            } else {
+                baselineFile = new File(arg);
+            }
+        }
+        
+        Properties baseline = new Properties();
+        if (baselineFile.exists()) {
+            try (InputStream in = new FileInputStream(baselineFile)) {
+                baseline.load(in);
+            }
+        }
+        double tolerance = Double.parseDouble(baseline.getProperty("tolerance", String.valueOf(DEFAULT_TOLERANCE)));
+        
+        File fixtures = Files.createTempDirectory("allocation-gate").toFile();
+        boolean passed;
+        try {
+            Map<String, Path> paths = createPaths(fixtures);
+            Map<String, Result> results = new LinkedHashMap<>();
+            for (Map.Entry<String, Path> path : paths.entrySet()) {
+                results.put(path.getKey(), measure(path.getValue(), fixtures));
+            }
+            
+            if (update) {
+                writeBaseline(baselineFile, results, tolerance);
+                System.out.println("Baseline written to " + baselineFile);
+                return;
+            }
+            passed = report(results, baseline, tolerance);
+        } finally {
+            for (File file : fixtures.listFiles()) {
+                file.delete();
+            }
+            fixtures.delete();
+        }
+        // Only once the fixtures are gone; exit doesn't run finally blocks
+        System.exit(passed ? 0 : 1);
+    }
+    
+    private static Map<String, Path> createPaths(File dir) throws Exception {
+        Map<String, Path> paths = new LinkedHashMap<>();
+        
+        String[][] items = new String[40][];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new String[] { "Item " + (i + 1), String.valueOf(i % 5 + 1), "9.99", String.valueOf(9.99 * (i % 5 + 1)) };
+        }
+        File invoice = new File(dir, "invoice.pdf");
+        paths.put("invoice", out -> PDFGenerator.generateInvoice(invoice.getPath(), "Fixture Customer", items, 1234.5));
+        
+        paths.put("convert.txt", converting(writeTxt(new File(dir, "fixture.txt"))));
+        paths.put("convert.docx", converting(writeDocx(new File(dir, "fixture.docx"))));
+        paths.put("convert.xlsx", converting(writeWorkbook(new XSSFWorkbook(), new File(dir, "fixture.xlsx"))));
+        paths.put("convert.xls", converting(writeWorkbook(new HSSFWorkbook(), new File(dir, "fixture.xls"))));
+        paths.put("convert.pptx", converting(writePptx(new File(dir, "fixture.pptx"))));
+        return paths;
+    }
+    
+    /**
+     * Parses and renders on the calling thread, bypassing DocumentModelCache so every run parses
+     */
+    private static Path converting(File fixture) {
+        return out -> {
+            ConversionBudget budget = new ConversionBudget();
+            budget.start();
+            DocumentModel model = new DocumentModel();
+            new OfficeConverter(fixture, ConversionSelection.ALL, budget, null).emit(model::block);
+            
+            Document document = new Document(PageSize.A4);
+            PdfWriter.getInstance(document, out);
+            document.open();
+            new DocumentRenderer(document).render(model);
+            document.close();
+        };
+    }
+    
+    private static Result measure(Path path, File dir) throws Exception {
+        File pdf = new File(dir, "out.pdf");
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            runOnce(path, pdf);
+        }
+        
+        File recordingFile = new File(dir, "gate.jfr");
+        Result result = new Result();
+        long allocated;
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ObjectAllocationInNewTLAB").withStackTrace();
+            recording.enable("jdk.ObjectAllocationOutsideTLAB").withStackTrace();
+            recording.enable("jdk.ObjectAllocationSample").withStackTrace();
+            recording.enable("jdk.GarbageCollection");
+            recording.start();
+            
+            long before = threadAllocatedBytes();
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                runOnce(path, pdf);
+            }
+            allocated = threadAllocatedBytes() - before;
+            
+            recording.stop();
+            recording.dump(recordingFile.toPath());
+        }
+        
+        result.bytesPerDocument = allocated / MEASURED_RUNS;
+        long pauseNanos = 0;
+        long threadId = Thread.currentThread().getId();
+        for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile.toPath())) {
+            String type = event.getEventType().getName();
+            if (type.equals("jdk.GarbageCollection")) {
+                pauseNanos += event.getDuration("sumOfPauses").toNanos();
+            } else if (event.getThread() != null && event.getThread().getJavaThreadId() == threadId) {
+                result.frames.merge(allocatingFrame(event.getStackTrace()), allocationWeight(event), Long::sum);
+            }
+        }
+        result.pauseMillisPerDocument = pauseNanos / 1e6 / MEASURED_RUNS;
+        recordingFile.delete();
+        return result;
+    }
+    
+    private static void runOnce(Path path, File pdf) throws Exception {
+        try (OutputStream out = new FileOutputStream(pdf)) {
+            path.render(out);
+        }
+    }
+    
+    private static long threadAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    /**
+     * Bytes an allocation event stands for, whichever event kind this JDK records
+     */
+    private static long allocationWeight(RecordedEvent event) {
+        if (event.hasField("weight")) return event.getLong("weight");
+        if (event.hasField("tlabSize")) return event.getLong("tlabSize");
+        return event.getLong("allocationSize");
+    }
+    
+    /**
+     * The innermost frame in our code or a library, skipping the JDK
+     */
+    private static String allocatingFrame(RecordedStackTrace stack) {
+        if (stack == null || stack.getFrames().isEmpty()) {
+            return "(no stack)";
+        }
+        for (RecordedFrame frame : stack.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return describe(frame);
+            }
+        }
+        return describe(stack.getFrames().get(0));
+    }
+    
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+            + (frame.getLineNumber() > 0 ? ":" + frame.getLineNumber() : "");
+    }
+    
+    private static boolean report(Map<String, Result> results, Properties baseline, double tolerance) {
+        boolean passed = true;
+        System.out.printf("%-14s %14s %14s %8s %12s  %s%n", "path", "bytes/doc", "baseline", "change", "GC ms/doc", "status");
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            Result result = entry.getValue();
+            String expected = baseline.getProperty(entry.getKey() + ".bytesPerDocument");
+            String status;
+            String change = "";
+            if (expected == null) {
+                status = "NO BASELINE";
+            } else {
+                long limit = Long.parseLong(expected);
+                double ratio = (double) result.bytesPerDocument / limit - 1;
+                change = String.format("%+.1f%%", ratio * 100);
+                if (ratio > tolerance) {
+                    status = "FAIL";
+                    passed = false;
+                } else {
+                    status = "ok";
+                }
+            }
+            System.out.printf("%-14s %,14d %14s %8s %12.2f  %s%n", entry.getKey(), result.bytesPerDocument,
+                expected == null ? "-" : String.format("%,d", Long.parseLong(expected)), change,
+                result.pauseMillisPerDocument, status);
+        }
+        
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            System.out.println();
+            System.out.println("Top allocating frames, " + entry.getKey() + " (sampled):");
+            long total = 0;
+            for (long weight : entry.getValue().frames.values()) {
+                total += weight;
+            }
+            List<Map.Entry<String, Long>> frames = new ArrayList<>(entry.getValue().frames.entrySet());
+            frames.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            for (int i = 0; i < Math.min(TOP_FRAMES, frames.size()); i++) {
+                System.out.printf("  %5.1f%%  %s%n", 100.0 * frames.get(i).getValue() / Math.max(1, total), frames.get(i).getKey());
+            }
+        }
+        
+        System.out.println();
+        System.out.println(passed ? "Allocation gate passed" : "Allocation gate FAILED: allocation grew more than "
+            + Math.round(tolerance * 100) + "% over the baseline");
+        return passed;
+    }
+    
+    private static void writeBaseline(File file, Map<String, Result> results, double tolerance) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.ISO_8859_1.name())) {
+            out.println("# Bytes allocated per document by each AllocationGate path.");
+            out.println("# Measured on Java " + System.getProperty("java.version") + "; allocation varies a little between JDKs.");
+            out.println("# Regenerate with: ./allocgate.sh --update");
+            out.println("tolerance=" + tolerance);
+            for (Map.Entry<String, Result> entry : results.entrySet()) {
+                out.println(entry.getKey() + ".bytesPerDocument=" + entry.getValue().bytesPerDocument);
+            }
+        }
+    }
+    
+    // Fixtures: fixed content, so allocation depends only on the code
+    
+    private static File writeTxt(File file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        // Several pieces of TextElement.CHUNK_CHARS; the cost per piece is what's being watched
+        for (int i = 0; i < 500; i++) {
+            text.append("Line ").append(i).append(": the quick brown fox jumps over the lazy dog\n");
+        }
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+    
+    private static File writeDocx(File file) throws IOException {
+        try (XWPFDocument doc = new XWPFDocument(); OutputStream out = new FileOutputStream(file)) {
+            for (int i = 0; i < 200; i++) {
+                doc.createParagraph().createRun().setText("Paragraph " + i + " of the fixture document, with enough words to wrap once.");
+            }
+            XWPFTable table = doc.createTable(50, 4);
+            for (int r = 0; r < 50; r++) {
+                for (int c = 0; c < 4; c++) {
+                    table.getRow(r).getCell(c).setText("R" + r + "C" + c);
+                }
+            }
+            doc.write(out);
+        }
+        return file;
+    }
+    
+    private static File writeWorkbook(Workbook workbook, File file) throws IOException {
+        try (Workbook wb = workbook; OutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = wb.createSheet("Data");
+            for (int r = 0; r < 500; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("Row " + r);
+                for (int c = 1; c < 6; c++) {
+                    row.createCell(c).setCellValue(r * c * 1.5);
+                }
+            }
+            wb.write(out);
+        }
+        return file;
+    }
+    
+    private static File writePptx(File file) throws IOException {
+        try (XMLSlideShow show = new XMLSlideShow(); OutputStream out = new FileOutputStream(file)) {
+            for (int i = 0; i < 20; i++) {
+                XSLFSlide slide = show.createSlide();
+                XSLFTextBox box = slide.createTextBox();
+                box.setText("Slide " + (i + 1) + "\nFirst point\nSecond point\nThird point");
+            }
+            show.write(out);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,262 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact column-by-column cell store for large tables. Whole-number and
+ * decimal columns are kept in primitive arrays; text cells hold a code into
+ * one table-wide dictionary of distinct values, kept as UTF-8 in a single
+ * byte array. A 100k-row table costs about what its text does, rather than
+ * a boxed object and a String per cell.
+ *
+ * Rows are added with {@link #addRow}, then {@link #finish} trims the arrays
+ * and drops the build-time lookup; the table is read-only afterwards.
+ */
+public class ColumnarTable {
+    
+    private static final int LONGS = 0;
+    private static final int DOUBLES = 1;
+    private static final int STRINGS = 2;
+    
+    /**
+     * One column's cells. Starts out numeric and turns into text for good the
+     * first time a value doesn't fit.
+     */
+    private class Column {
+        int kind = -1; // Not known until the first non-null value
+        long[] longs;
+        double[] doubles;
+        int[] codes; // Dictionary codes, -1 for null
+        BitSet nulls = new BitSet();
+        
+        void set(int row, Object value) {
+            if (value == null || "".equals(value)) {
+                // Empty cells print the same, so they are stored as nulls
+                setNull(row);
+                return;
+            }
+            
+            if (kind == -1) {
+                kind = LONGS;
+                longs = new long[capacity];
+            }
+            if (kind == LONGS) {
+                Long number = asLong(value);
+                if (number != null) {
+                    longs[row] = number;
+                    return;
+                }
+                if (row == 0 || nulls.cardinality() == row) {
+                    // Nothing stored yet, so the column can still start as decimals
+                    kind = DOUBLES;
+                    longs = null;
+                    doubles = new double[capacity];
+                } else {
+                    toStrings(row);
+                }
+            }
+            if (kind == DOUBLES) {
+                Double number = asDouble(value);
+                if (number != null) {
+                    doubles[row] = number;
+                    return;
+                }
+                toStrings(row);
+            }
+            codes[row] = intern(value.toString());
+        }
+        
+        void setNull(int row) {
+            nulls.set(row);
+            if (kind == STRINGS) {
+                codes[row] = -1;
+            }
+        }
+        
+        /**
+         * Moves the rows before {@code end} over to dictionary codes
+         */
+        void toStrings(int end) {
+            int[] converted = new int[capacity];
+            for (int row = 0; row < end; row++) {
+                converted[row] = nulls.get(row) ? -1 : intern(getText(row));
+            }
+            kind = STRINGS;
+            longs = null;
+            doubles = null;
+            codes = converted;
+        }
+        
+        void resize(int size) {
+            if (longs != null) longs = Arrays.copyOf(longs, size);
+            if (doubles != null) doubles = Arrays.copyOf(doubles, size);
+            if (codes != null) codes = Arrays.copyOf(codes, size);
+        }
+        
+        String getText(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            switch (kind) {
+                case LONGS:
+                    return Long.toString(longs[row]);
+                case DOUBLES:
+                    return Double.toString(doubles[row]);
+                default:
+                    return dictionaryValue(codes[row]);
+            }
+        }
+    }
+    
+    private final String[] headers;
+    private final Column[] columns;
+    private int rows;
+    private int capacity = 16;
+    
+    // Distinct text values, UTF-8, back to back
+    private byte[] dictionary = new byte[256];
+    private int dictionaryLength;
+    private int[] dictionaryOffsets = new int[16]; // Start of each value, plus one past the last
+    private int dictionarySize;
+    
+    // Text to dictionary code while rows are being added
+    private Map<String, Integer> lookup = new HashMap<>();
+    
+    public ColumnarTable(String[] headers) {
+        this.headers = headers.clone();
+        columns = new Column[headers.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column();
+        }
+    }
+    
+    /**
+     * Appends a row; missing trailing cells are empty and extra ones are ignored
+     */
+    public void addRow(Object... cells) {
+        if (lookup == null) {
+            throw new IllegalStateException("Table is finished");
+        }
+        if (rows == capacity) {
+            capacity *= 2;
+            for (Column column : columns) {
+                column.resize(capacity);
+            }
+        }
+        for (int j = 0; j < columns.length; j++) {
+            columns[j].set(rows, j < cells.length ? cells[j] : null);
+        }
+        rows++;
+    }
+    
+    /**
+     * Trims storage to the rows added; no rows can be added afterwards
+     */
+    public void finish() {
+        if (lookup == null) return;
+        capacity = rows;
+        for (Column column : columns) {
+            column.resize(rows);
+        }
+        dictionary = Arrays.copyOf(dictionary, dictionaryLength);
+        dictionaryOffsets = Arrays.copyOf(dictionaryOffsets, dictionarySize + 1);
+        lookup = null;
+    }
+    
+    public int getRowCount() {
+        return rows;
+    }
+    
+    public int getColumnCount() {
+        return headers.length;
+    }
+    
+    public String getHeader(int column) {
+        return headers[column];
+    }
+    
+    /**
+     * The cell as it prints, or null for an empty cell
+     */
+    public String getText(int row, int column) {
+        if (row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        }
+        return columns[column].getText(row);
+    }
+    
+    private int intern(String text) {
+        Integer code = lookup.get(text);
+        if (code != null) {
+            return code;
+        }
+        
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (dictionaryLength + utf8.length > dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, Math.max(dictionary.length * 2, dictionaryLength + utf8.length));
+        }
+        System.arraycopy(utf8, 0, dictionary, dictionaryLength, utf8.length);
+        dictionaryLength += utf8.length;
+        
+        if (dictionarySize + 2 > dictionaryOffsets.length) {
+            dictionaryOffsets = Arrays.copyOf(dictionaryOffsets, dictionaryOffsets.length * 2);
+        }
+        dictionaryOffsets[++dictionarySize] = dictionaryLength;
+        
+        code = dictionarySize - 1;
+        lookup.put(text, code);
+        return code;
+    }
+    
+    private String dictionaryValue(int code) {
+        if (code < 0) {
+            return null;
+        }
+        int start = dictionaryOffsets[code];
+        return new String(dictionary, start, dictionaryOffsets[code + 1] - start, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * The value as a long if it prints exactly like one, e.g. 42 or "42" but not "042"
+     */
+    private static Long asLong(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            String text = (String) value;
+            if (text.length() > 19) return null;
+            try {
+                long number = Long.parseLong(text);
+                return Long.toString(number).equals(text) ? number : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * The value as a double if it prints exactly like one, e.g. 1.5 or "1.5" but not "1.50"
+     */
+    private static Double asDouble(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof String) {
+            String text = (String) value;
+            if (text.isEmpty() || text.length() > 32) return null;
+            char first = text.charAt(0);
+            if (first != '-' && (first < '0' || first > '9')) return null; // Skip NaN, Infinity, padded text
+            try {
+                double number = Double.parseDouble(text);
+                return Double.toString(number).equals(text) ? number : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Wall-clock and estimated-memory allowance for a single file conversion.
+ *
+ * Converters call {@link #checkpoint()} once per row, paragraph or slide, and
+ * {@link #reserve(long)} before building anything large. Both throw a
+ * {@link ConversionBudgetExceededException} as soon as the conversion runs over
+ * budget, is cancelled, or its thread is interrupted, so a pathological file
+ * gives its worker back instead of pinning it.
+ */
+public class ConversionBudget {
+    
+    /** Default wall-clock limit, overridable with -Dpdfgen.conversion.timeLimitMillis */
+    public static final long DEFAULT_TIME_LIMIT_MILLIS =
+        Long.getLong("pdfgen.conversion.timeLimitMillis", 120_000L);
+    
+    /** Default memory limit, overridable with -Dpdfgen.conversion.memoryLimitBytes */
+    public static final long DEFAULT_MEMORY_LIMIT_BYTES =
+        Long.getLong("pdfgen.conversion.memoryLimitBytes", Runtime.getRuntime().maxMemory() / 2);
+    
+    /** Estimated heap held by one converted table cell (POI cell, String, Phrase, PdfPCell) */
+    public static final long CELL_BYTES = 512;
+    
+    private final long timeLimitMillis;
+    private final long memoryLimitBytes;
+    private long startNanos = System.nanoTime();
+    private long reservedBytes;
+    private volatile boolean cancelled;
+    
+    /**
+     * Creates a budget with the default limits
+     */
+    public ConversionBudget() {
+        this(DEFAULT_TIME_LIMIT_MILLIS, DEFAULT_MEMORY_LIMIT_BYTES);
+    }
+    
+    public ConversionBudget(long timeLimitMillis, long memoryLimitBytes) {
+        this.timeLimitMillis = timeLimitMillis;
+        this.memoryLimitBytes = memoryLimitBytes;
+    }
+    
+    /**
+     * Budget that never runs out; it still honors cancellation
+     */
+    public static ConversionBudget unlimited() {
+        return new ConversionBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+    
+    /**
+     * Restarts the clock and clears reservations at the beginning of a conversion
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+        reservedBytes = 0;
+        cancelled = false;
+    }
+    
+    /**
+     * Asks the conversion to stop at its next checkpoint. Safe to call from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    /**
+     * Fails if the conversion was cancelled or interrupted, or has run out of time
+     */
+    public void checkpoint() throws ConversionBudgetExceededException {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw exceeded(ConversionBudgetExceededException.Reason.CANCELLED, "Conversion was cancelled");
+        }
+        if (timeLimitMillis != Long.MAX_VALUE && getElapsedMillis() > timeLimitMillis) {
+            throw exceeded(ConversionBudgetExceededException.Reason.TIME_LIMIT,
+                "Conversion exceeded its time limit of " + timeLimitMillis + " ms");
+        }
+    }
+    
+    /**
+     * Records that the conversion is about to hold roughly this many more bytes,
+     * failing before they are allocated if that would exceed the memory limit
+     */
+    public void reserve(long bytes) throws ConversionBudgetExceededException {
+        reserve(bytes, "Conversion");
+    }
+    
+    /**
+     * Reserves like {@link #reserve(long)}; a failure message starts with {@code what},
+     * such as "Parsing report.docx"
+     */
+    public void reserve(long bytes, String what) throws ConversionBudgetExceededException {
+        checkpoint();
+        reservedBytes += bytes;
+        if (reservedBytes > memoryLimitBytes || reservedBytes < 0) {
+            throw exceeded(ConversionBudgetExceededException.Reason.MEMORY_LIMIT,
+                what + " needs an estimated " + (reservedBytes >> 20) + " MB, over its limit of "
+                + (memoryLimitBytes >> 20) + " MB");
+        }
+    }
+    
+    /**
+     * Whether reserving this many more bytes would stay within the memory limit
+     */
+    public boolean canReserve(long bytes) {
+        long total = reservedBytes + bytes;
+        return total >= 0 && total <= memoryLimitBytes;
+    }
+    
+    /**
+     * Returns bytes reserved earlier, once the objects holding them have been released
+     */
+    public void release(long bytes) {
+        reservedBytes = Math.max(0, reservedBytes - bytes);
+    }
+    
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+    
+    public long getReservedBytes() {
+        return reservedBytes;
+    }
+    
+    private ConversionBudgetExceededException exceeded(ConversionBudgetExceededException.Reason reason, String message) {
+        return new ConversionBudgetExceededException(reason, message, getElapsedMillis(), reservedBytes);
+    }
+}
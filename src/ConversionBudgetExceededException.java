@@ -0,0 +1,37 @@
+/**
+ * Typed failure for a conversion that was stopped by its {@link ConversionBudget}
+ */
+public class ConversionBudgetExceededException extends Exception {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /** Why the conversion was stopped */
+    public enum Reason {
+        TIME_LIMIT,
+        MEMORY_LIMIT,
+        CANCELLED
+    }
+    
+    private final Reason reason;
+    private final long elapsedMillis;
+    private final long estimatedBytes;
+    
+    public ConversionBudgetExceededException(Reason reason, String message, long elapsedMillis, long estimatedBytes) {
+        super(message);
+        this.reason = reason;
+        this.elapsedMillis = elapsedMillis;
+        this.estimatedBytes = estimatedBytes;
+    }
+    
+    public Reason getReason() {
+        return reason;
+    }
+    
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+    
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+}
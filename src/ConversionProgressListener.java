@@ -0,0 +1,21 @@
+/**
+ * Receives progress of a PDF being written progressively. Called on the
+ * thread doing the conversion, so GUI listeners must hop to the EDT.
+ */
+public interface ConversionProgressListener {
+    
+    /**
+     * Called each time a page has been completed and flushed to the output
+     *
+     * @param pagesDone pages completed so far
+     * @param bytesWritten bytes of PDF written so far
+     * @param etaMillis estimated time until the conversion finishes, or -1 if not known yet
+     */
+    void progressed(int pagesDone, long bytesWritten, long etaMillis);
+    
+    /**
+     * Called once when the output has been closed, whether or not the conversion succeeded
+     */
+    default void finished(int pages, long bytesWritten) {
+    }
+}
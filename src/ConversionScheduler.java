@@ -0,0 +1,207 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-aware scheduler for file conversions.
+ *
+ * Each job is costed up front with {@link OfficeFileProbe} and queued on either
+ * the small-job lane or the large-job lane. The lanes have their own workers,
+ * so a 300 MB workbook never sits in front of a queue of 20 KB memos, and large
+ * jobs always have at least one worker of their own and cannot be starved.
+ * Within a lane, jobs run in arrival order, skipping over jobs whose format is
+ * already at its concurrency limit. Limits count each lane's jobs separately,
+ * so a stream of small workbooks can't hold every slot a large one needs.
+ */
+public class ConversionScheduler {
+    
+    /** Jobs estimated above this many bytes of work go to the large-job lane */
+    public static final long DEFAULT_LARGE_JOB_THRESHOLD = 8L * 1024 * 1024;
+    
+    private final long largeJobThreshold;
+    private final Map<String, Integer> formatLimits = new HashMap<>();
+    private final Map<String, Integer> smallRunning = new HashMap<>();
+    private final Map<String, Integer> largeRunning = new HashMap<>();
+    private final Deque<Job<?>> smallQueue = new ArrayDeque<>();
+    private final Deque<Job<?>> largeQueue = new ArrayDeque<>();
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private boolean shutdown;
+    
+    /**
+     * Creates a scheduler sized for this machine with default per-format limits.
+     * The DOM based spreadsheet and slide converters are memory hungry, so they
+     * are kept to two concurrent jobs each.
+     */
+    public ConversionScheduler() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), 1, DEFAULT_LARGE_JOB_THRESHOLD);
+        setFormatLimit("xlsx", 2);
+        setFormatLimit("xls", 2);
+        setFormatLimit("pptx", 2);
+    }
+    
+    public ConversionScheduler(int smallWorkers, int largeWorkers, long largeJobThreshold) {
+        if (smallWorkers < 1 || largeWorkers < 1) {
+            throw new IllegalArgumentException("Each lane needs at least one worker");
+        }
+        this.largeJobThreshold = largeJobThreshold;
+        
+        for (int i = 0; i < smallWorkers; i++) {
+            startWorker(smallQueue, smallRunning, "conversion-small-" + i);
+        }
+        for (int i = 0; i < largeWorkers; i++) {
+            startWorker(largeQueue, largeRunning, "conversion-large-" + i);
+        }
+    }
+    
+    /**
+     * Limits how many jobs of the given format (file extension) run at once
+     * in each lane
+     */
+    public void setFormatLimit(String format, int maxConcurrent) {
+        lock.lock();
+        try {
+            formatLimits.put(format.toLowerCase(), maxConcurrent);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Queues a conversion of the given input file. The file is probed to pick
+     * the lane; if probing fails the plain file size is used as the cost.
+     */
+    public <T> Future<T> submit(File input, Callable<T> task) {
+        String format = OfficeFileProbe.formatOf(input.getName());
+        long cost;
+        try {
+            cost = OfficeFileProbe.probe(input).estimatedCost();
+        } catch (IOException e) {
+            cost = input.length();
+        }
+        
+        Job<T> job = new Job<>(task, format);
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new IllegalStateException("Scheduler has been shut down");
+            }
+            (cost > largeJobThreshold ? largeQueue : smallQueue).addLast(job);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return job;
+    }
+    
+    /**
+     * Stops accepting jobs; queued jobs still run
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getQueuedSmallJobs() {
+        lock.lock();
+        try {
+            return smallQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getQueuedLargeJobs() {
+        lock.lock();
+        try {
+            return largeQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void startWorker(Deque<Job<?>> queue, Map<String, Integer> running, String name) {
+        Thread worker = new Thread(() -> runWorker(queue, running), name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    private void runWorker(Deque<Job<?>> queue, Map<String, Integer> running) {
+        while (true) {
+            Job<?> job;
+            lock.lock();
+            try {
+                while ((job = takeRunnable(queue, running)) == null) {
+                    if (shutdown && queue.isEmpty()) {
+                        return;
+                    }
+                    changed.await();
+                }
+                running.merge(job.format, 1, Integer::sum);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            
+            try {
+                job.run();
+            } finally {
+                lock.lock();
+                try {
+                    running.merge(job.format, -1, Integer::sum);
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Removes and returns the oldest job in the queue whose format still has
+     * a free slot in that lane, or null if none can run right now. Caller
+     * holds the lock.
+     */
+    private Job<?> takeRunnable(Deque<Job<?>> queue, Map<String, Integer> running) {
+        Iterator<Job<?>> it = queue.iterator();
+        while (it.hasNext()) {
+            Job<?> job = it.next();
+            if (job.isCancelled()) {
+                it.remove();
+                continue;
+            }
+            Integer limit = formatLimits.get(job.format);
+            if (limit == null || running.getOrDefault(job.format, 0) < limit) {
+                it.remove();
+                return job;
+            }
+        }
+        return null;
+    }
+    
+    private static class Job<T> extends FutureTask<T> {
+        final String format;
+        
+        Job(Callable<T> task, String format) {
+            super(task);
+            this.format = format;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Which parts of a file a conversion should produce: slide numbers, sheets
+ * (by name or number) and a row window. Numbers are 1-based, as shown in
+ * PowerPoint and Excel. A missing or blank spec selects everything.
+ *
+ * Specs are comma separated numbers and ranges, e.g. "10-14, 20". Ranges
+ * may be open ended, e.g. "500-"; a closed range can't go past MAX_NUMBER.
+ */
+public class ConversionSelection {
+    
+    /** Selects the whole file */
+    public static final ConversionSelection ALL = new ConversionSelection(null, null, null);
+    
+    /** Highest slide or sheet number a closed range may name; more is a typo for an open range */
+    public static final int MAX_NUMBER = 100_000;
+    
+    private final BitSet slides;
+    private final int slidesFrom;        // Every slide from here on is selected too
+    private final BitSet sheetNumbers;
+    private final int sheetsFrom;
+    private final Set<String> sheetNames;
+    private final int firstRow;
+    private final int lastRow;
+    private final String description;
+    private final String slidesSpec;
+    private final String sheetsSpec;
+    private final String rowsSpec;
+    
+    /**
+     * Parses the three selection specs; each may be null or blank
+     *
+     * @throws IllegalArgumentException if a spec is malformed
+     */
+    public ConversionSelection(String slides, String sheets, String rows) {
+        if (isBlank(slides)) {
+            this.slides = null;
+            slidesFrom = Integer.MAX_VALUE;
+        } else {
+            this.slides = new BitSet();
+            slidesFrom = parseRanges(slides, "slide", this.slides);
+        }
+        
+        if (isBlank(sheets)) {
+            sheetNumbers = null;
+            sheetNames = null;
+            sheetsFrom = Integer.MAX_VALUE;
+        } else {
+            sheetNumbers = new BitSet();
+            sheetNames = new LinkedHashSet<>();
+            int from = Integer.MAX_VALUE;
+            for (String part : sheets.split(",")) {
+                String sheet = part.trim();
+                if (sheet.matches("\\d+(\\s*-\\s*\\d*)?")) {
+                    from = Math.min(from, parseRanges(sheet, "sheet", sheetNumbers));
+                } else if (!sheet.isEmpty()) {
+                    sheetNames.add(sheet);
+                }
+            }
+            sheetsFrom = from;
+        }
+        
+        if (isBlank(rows)) {
+            firstRow = 1;
+            lastRow = Integer.MAX_VALUE;
+        } else {
+            String window = rows.trim();
+            int dash = window.indexOf('-');
+            try {
+                if (dash < 0) {
+                    firstRow = lastRow = Integer.parseInt(window);
+                } else {
+                    firstRow = Integer.parseInt(window.substring(0, dash).trim());
+                    String end = window.substring(dash + 1).trim();
+                    lastRow = end.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(end);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid row window: " + rows);
+            }
+            if (firstRow < 1 || lastRow < firstRow) {
+                throw new IllegalArgumentException("Invalid row window: " + rows);
+            }
+        }
+        
+        description = describe(slides, sheets, rows);
+        slidesSpec = isBlank(slides) ? "" : slides.trim();
+        sheetsSpec = isBlank(sheets) ? "" : sheets.trim();
+        rowsSpec = isBlank(rows) ? "" : rows.trim();
+    }
+    
+    public boolean isAll() {
+        return slides == null && sheetNumbers == null && firstRow == 1 && lastRow == Integer.MAX_VALUE;
+    }
+    
+    public boolean includesSlide(int number) {
+        return slides == null || number >= slidesFrom || slides.get(number);
+    }
+    
+    /**
+     * True if no later slide can be selected, so a converter can stop reading
+     */
+    public boolean isPastLastSlide(int number) {
+        return slides != null && slidesFrom == Integer.MAX_VALUE && number >= slides.length();
+    }
+    
+    public boolean includesSheet(int number, String name) {
+        return sheetNumbers == null || number >= sheetsFrom || sheetNumbers.get(number) || sheetNames.contains(name);
+    }
+    
+    public boolean includesRow(int number) {
+        return number >= firstRow && number <= lastRow;
+    }
+    
+    /**
+     * True if no later row can be selected, so a converter can stop reading the sheet
+     */
+    public boolean isPastLastRow(int number) {
+        return number > lastRow;
+    }
+    
+    /**
+     * Short human readable form, e.g. "slides 10-14", or empty for the whole file
+     */
+    public String getDescription() {
+        return description;
+    }
+    
+    /**
+     * The specs this selection was parsed from, empty where everything is selected
+     */
+    public String getSlidesSpec() {
+        return slidesSpec;
+    }
+    
+    public String getSheetsSpec() {
+        return sheetsSpec;
+    }
+    
+    public String getRowsSpec() {
+        return rowsSpec;
+    }
+    
+    /**
+     * Adds the closed ranges of a spec to {@code set} and returns where the
+     * earliest open-ended one starts, or Integer.MAX_VALUE if there is none
+     */
+    private static int parseRanges(String spec, String what, BitSet set) {
+        int openFrom = Integer.MAX_VALUE;
+        for (String part : spec.split(",")) {
+            String range = part.trim();
+            if (range.isEmpty()) continue;
+            
+            int dash = range.indexOf('-');
+            try {
+                int from = Integer.parseInt((dash < 0 ? range : range.substring(0, dash)).trim());
+                String end = dash < 0 ? null : range.substring(dash + 1).trim();
+                if (from < 1) {
+                    throw new IllegalArgumentException("Invalid " + what + " range: " + range);
+                }
+                if (end != null && end.isEmpty()) {
+                    openFrom = Math.min(openFrom, from);
+                    continue;
+                }
+                int to = end == null ? from : Integer.parseInt(end);
+                if (to < from) {
+                    throw new IllegalArgumentException("Invalid " + what + " range: " + range);
+                }
+                if (to > MAX_NUMBER) {
+                    throw new IllegalArgumentException("No " + what + " number goes as high as " + to
+                        + "; for everything from " + from + " on, use " + from + "-");
+                }
+                set.set(from, to + 1);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + what + " range: " + range);
+            }
+        }
+        return openFrom;
+    }
+    
+    private static String describe(String slides, String sheets, String rows) {
+        StringBuilder sb = new StringBuilder();
+        if (!isBlank(slides)) sb.append("slides ").append(slides.trim());
+        if (!isBlank(sheets)) sb.append(sb.length() > 0 ? ", " : "").append("sheets ").append(sheets.trim());
+        if (!isBlank(rows)) sb.append(sb.length() > 0 ? ", " : "").append("rows ").append(rows.trim());
+        return sb.toString();
+    }
+    
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+}
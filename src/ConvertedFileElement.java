@@ -0,0 +1,74 @@
+import java.io.File;
+
+import com.itextpdf.text.Document;
+
+/**
+ * The contents of an Office or text file, converted through a DocumentModel
+ */
+class ConvertedFileElement extends PDFElement {
+    String filePath;
+    ConversionSelection selection;
+    ConversionBudget budget;
+    ProgressiveOutput progress; // Only set when converting straight to a progressive output
+    DocumentOutline outline; // Only set when converting straight to the file's own PDF
+    byte[] sourceHash; // Contents hash when loaded from a project file
+    
+    // Parsed blocks allowed to wait for the renderer
+    private static final int PIPE_CAPACITY = 64;
+    
+    ConvertedFileElement(String filePath) {
+        this(filePath, ConversionSelection.ALL, new ConversionBudget());
+    }
+    
+    ConvertedFileElement(String filePath, ConversionSelection selection, ConversionBudget budget) {
+        this.filePath = filePath;
+        this.selection = selection;
+        this.budget = budget;
+    }
+    
+    /**
+     * Parses the file into a model, or takes it from the cache, ready to be
+     * rendered. Placed among other elements the file gets no bookmarks or
+     * contents page; only a file converted on its own does (see streamInto).
+     */
+    ElementPreparer.Placement prepare() throws Exception {
+        File file = new File(filePath);
+        budget.start();
+        
+        DocumentModel model = DocumentModelCache.get(file, selection);
+        if (model == null) {
+            model = new DocumentModel();
+            new OfficeConverter(file, selection, budget, progress).emit(model::block);
+            DocumentModelCache.put(file, selection, model);
+        }
+        
+        DocumentModel parsed = model;
+        return document -> new DocumentRenderer(document).render(parsed);
+    }
+    
+    /**
+     * Converts straight into the document, used when the file is the whole
+     * PDF: parsing runs on a separate thread while what has been parsed so
+     * far is rendered, and the blocks are kept so the next render of this
+     * file can skip parsing
+     */
+    void streamInto(Document document) throws Exception {
+        File file = new File(filePath);
+        DocumentRenderer renderer = new DocumentRenderer(document, outline);
+        budget.start();
+        
+        DocumentModel cached = DocumentModelCache.get(file, selection);
+        if (cached != null) {
+            renderer.render(cached);
+            return;
+        }
+        
+        DocumentModel model = new DocumentModel();
+        OfficeConverter converter = new OfficeConverter(file, selection, budget, progress);
+        DocumentModel.pipe(converter, block -> {
+            model.block(block);
+            renderer.block(block);
+        }, PIPE_CAPACITY);
+        DocumentModelCache.put(file, selection, model);
+    }
+}
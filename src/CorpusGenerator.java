@@ -0,0 +1,349 @@
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.apache.poi.common.usermodel.PictureType;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.sl.usermodel.PictureData;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.Units;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFPictureData;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFTextBox;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+
+/**
+ * Writes a synthetic corpus of .docx, .xlsx, .xls, .pptx and .txt files for
+ * performance work on the converters, so nobody needs customer files to
+ * reproduce a slow conversion. The same options and seed always produce the
+ * same content.
+ *
+ * Usage:
+ *   java CorpusGenerator outputDir [options]
+ *
+ *   --files N         files per format (default 5)
+ *   --formats LIST    comma-separated, from docx,xlsx,xls,pptx,txt (default all)
+ *   --rows N          spreadsheet rows per sheet (default 1000)
+ *   --columns N       spreadsheet columns (default 8)
+ *   --sheets N        sheets per workbook (default 1)
+ *   --sparsity F      fraction of empty spreadsheet cells, 0 to 1 (default 0.1)
+ *   --paragraphs N    paragraphs per .docx, lines per .txt (default 200)
+ *   --slides N        slides per .pptx (default 20)
+ *   --images N        images per .docx and .pptx (default 2)
+ *   --seed N          random seed (default 1)
+ *
+ * Counts are per-file means: each file draws its own between half and one and
+ * a half times the setting, so a corpus has a spread of sizes. .xls sheets stop
+ * at the format's 65,536 rows.
+ */
+public class CorpusGenerator {
+    
+    private static final String[] WORDS = {
+        "account", "balance", "quarterly", "report", "revenue", "forecast", "customer", "order",
+        "shipment", "invoice", "region", "north", "south", "east", "west", "total", "margin",
+        "review", "approved", "pending", "delivery", "contract", "service", "product", "update",
+        "the", "of", "and", "for", "with", "on", "by", "in", "to", "a", "is", "was", "per"
+    };
+    
+    private static final int XLS_MAX_ROWS = 65536;
+    
+    // Rows SXSSF keeps in memory before flushing to its temporary file
+    private static final int XLSX_WINDOW = 500;
+    
+    int files = 5;
+    List<String> formats = Arrays.asList("docx", "xlsx", "xls", "pptx", "txt");
+    int rows = 1000;
+    int columns = 8;
+    int sheets = 1;
+    double sparsity = 0.1;
+    int paragraphs = 200;
+    int slides = 20;
+    int images = 2;
+    long seed = 1;
+    
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        
+        if (args.length == 0 || args[0].startsWith("--")) {
+            System.err.println("Usage: java CorpusGenerator outputDir [--files N] [--formats docx,xlsx,xls,pptx,txt]");
+            System.err.println("       [--rows N] [--columns N] [--sheets N] [--sparsity F] [--paragraphs N]");
+            System.err.println("       [--slides N] [--images N] [--seed N]");
+            System.exit(2);
+        }
+        
+        CorpusGenerator generator = new CorpusGenerator();
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            generator.set(args[i], args[i + 1]);
+        }
+        
+        File dir = new File(args[0]);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        long start = System.nanoTime();
+        int written = generator.generate(dir);
+        System.out.printf("Wrote %d files to %s (%d ms)%n", written, dir, (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    private void set(String option, String value) {
+        switch (option) {
+            case "--files": files = Integer.parseInt(value); break;
+            case "--formats": formats = Arrays.asList(value.toLowerCase().split("\\s*,\\s*")); break;
+            case "--rows": rows = Integer.parseInt(value); break;
+            case "--columns": columns = Integer.parseInt(value); break;
+            case "--sheets": sheets = Integer.parseInt(value); break;
+            case "--sparsity": sparsity = Double.parseDouble(value); break;
+            case "--paragraphs": paragraphs = Integer.parseInt(value); break;
+            case "--slides": slides = Integer.parseInt(value); break;
+            case "--images": images = Integer.parseInt(value); break;
+            case "--seed": seed = Long.parseLong(value); break;
+            default: throw new IllegalArgumentException("Unknown option " + option);
+        }
+    }
+    
+    /**
+     * Writes the corpus and returns how many files were written
+     */
+    public int generate(File dir) throws IOException {
+        int written = 0;
+        for (String format : formats) {
+            for (int i = 1; i <= files; i++) {
+                // Each file has its own stream, so changing one format's options leaves the others alone
+                Random random = new Random(seed * 31 + format.hashCode() * 1009L + i);
+                File file = new File(dir, String.format("corpus-%03d.%s", i, format));
+                switch (format) {
+                    case "docx": writeDocx(file, random); break;
+                    case "xlsx": writeWorkbook(new SXSSFWorkbook(XLSX_WINDOW), file, random, Integer.MAX_VALUE); break;
+                    case "xls": writeWorkbook(new HSSFWorkbook(), file, random, XLS_MAX_ROWS); break;
+                    case "pptx": writePptx(file, random); break;
+                    case "txt": writeTxt(file, random); break;
+                    default: throw new IllegalArgumentException("Unknown format " + format);
+                }
+                written++;
+            }
+        }
+        return written;
+    }
+    
+    private void writeDocx(File file, Random random) throws IOException {
+        int paragraphCount = vary(paragraphs, random);
+        int imageCount = vary(images, random);
+        
+        try (XWPFDocument doc = new XWPFDocument(); OutputStream out = new FileOutputStream(file)) {
+            for (int i = 0; i < paragraphCount; i++) {
+                XWPFParagraph paragraph = doc.createParagraph();
+                paragraph.createRun().setText(sentence(random, 8 + random.nextInt(40)));
+                // Some paragraphs have a second, formatted run
+                if (random.nextInt(4) == 0) {
+                    XWPFRun emphasis = paragraph.createRun();
+                    emphasis.setBold(random.nextBoolean());
+                    emphasis.setItalic(!emphasis.isBold());
+                    emphasis.setText(" " + sentence(random, 3 + random.nextInt(6)));
+                }
+                
+                if (imageCount > 0 && random.nextInt(paragraphCount - i) < imageCount) {
+                    imageCount--;
+                    try {
+                        doc.createParagraph().createRun().addPicture(new ByteArrayInputStream(image(random)),
+                            PictureType.PNG, "image" + i + ".png", Units.toEMU(320), Units.toEMU(240));
+                    } catch (org.apache.poi.openxml4j.exceptions.InvalidFormatException e) {
+                        throw new IOException(e);
+                    }
+                }
+                
+                // A small table every fifty paragraphs or so
+                if (random.nextInt(50) == 0) {
+                    int tableRows = 3 + random.nextInt(20);
+                    int tableColumns = 2 + random.nextInt(5);
+                    XWPFTable table = doc.createTable(tableRows, tableColumns);
+                    for (int r = 0; r < tableRows; r++) {
+                        for (int c = 0; c < tableColumns; c++) {
+                            table.getRow(r).getCell(c).setText(r == 0 ? word(random) : cellText(random, c));
+                        }
+                    }
+                }
+            }
+            doc.write(out);
+        }
+    }
+    
+    /**
+     * Columns cycle through text, whole numbers, decimals and dates
+     */
+    private void writeWorkbook(Workbook workbook, File file, Random random, int maxRows) throws IOException {
+        try (Workbook wb = workbook; OutputStream out = new FileOutputStream(file)) {
+            CellStyle dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+            Calendar date = Calendar.getInstance();
+            
+            for (int s = 1; s <= Math.max(1, sheets); s++) {
+                Sheet sheet = wb.createSheet("Sheet" + s);
+                int rowCount = Math.min(maxRows, vary(rows, random) + 1);
+                
+                Row header = sheet.createRow(0);
+                for (int c = 0; c < columns; c++) {
+                    header.createCell(c).setCellValue(capitalize(word(random)) + " " + (c + 1));
+                }
+                
+                for (int r = 1; r < rowCount; r++) {
+                    Row row = sheet.createRow(r);
+                    for (int c = 0; c < columns; c++) {
+                        if (random.nextDouble() < sparsity) continue;
+                        Cell cell = row.createCell(c);
+                        switch (c % 4) {
+                            case 0:
+                                cell.setCellValue(sentence(random, 1 + random.nextInt(3)));
+                                break;
+                            case 1:
+                                cell.setCellValue(random.nextInt(10000));
+                                break;
+                            case 2:
+                                cell.setCellValue(Math.round(random.nextDouble() * 100000) / 100.0);
+                                break;
+                            default:
+                                date.clear();
+                                date.set(2015 + random.nextInt(10), random.nextInt(12), 1 + random.nextInt(28));
+                                cell.setCellValue(date.getTime());
+                                cell.setCellStyle(dateStyle);
+                        }
+                    }
+                }
+            }
+            wb.write(out);
+            if (wb instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) wb).dispose();
+            }
+        }
+    }
+    
+    private void writePptx(File file, Random random) throws IOException {
+        int slideCount = vary(slides, random);
+        int imageCount = vary(images, random);
+        
+        try (XMLSlideShow show = new XMLSlideShow(); OutputStream out = new FileOutputStream(file)) {
+            for (int i = 0; i < slideCount; i++) {
+                XSLFSlide slide = show.createSlide();
+                
+                XSLFTextBox title = slide.createTextBox();
+                title.setAnchor(new java.awt.Rectangle(40, 20, 640, 60));
+                title.setText(capitalize(sentence(random, 2 + random.nextInt(5))));
+                
+                StringBuilder bullets = new StringBuilder();
+                int points = 2 + random.nextInt(6);
+                for (int p = 0; p < points; p++) {
+                    if (p > 0) bullets.append('\n');
+                    bullets.append(capitalize(sentence(random, 4 + random.nextInt(12))));
+                }
+                XSLFTextBox body = slide.createTextBox();
+                body.setAnchor(new java.awt.Rectangle(40, 100, 640, 380));
+                body.setText(bullets.toString());
+                
+                if (imageCount > 0 && random.nextInt(slideCount - i) < imageCount) {
+                    imageCount--;
+                    XSLFPictureData picture = show.addPicture(image(random), PictureData.PictureType.PNG);
+                    slide.createPicture(picture).setAnchor(new java.awt.Rectangle(400, 200, 320, 240));
+                }
+            }
+            show.write(out);
+        }
+    }
+    
+    private void writeTxt(File file, Random random) throws IOException {
+        int lineCount = vary(paragraphs, random);
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lineCount; i++) {
+                // Mostly prose, with the odd blank line and tab-separated record
+                int kind = random.nextInt(10);
+                if (kind == 0) {
+                    out.write("");
+                } else if (kind == 1) {
+                    out.write(word(random) + "\t" + random.nextInt(10000) + "\t" + cellText(random, 2));
+                } else {
+                    out.write(capitalize(sentence(random, 5 + random.nextInt(15))) + ".");
+                }
+                out.newLine();
+            }
+        }
+    }
+    
+    /**
+     * A count between half and one and a half times the setting, at least 1 unless the setting is 0
+     */
+    private static int vary(int mean, Random random) {
+        if (mean <= 0) return 0;
+        return Math.max(1, mean / 2 + random.nextInt(mean + 1));
+    }
+    
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+    
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sentence.append(' ');
+            sentence.append(word(random));
+        }
+        return sentence.toString();
+    }
+    
+    private static String cellText(Random random, int column) {
+        switch (column % 3) {
+            case 0: return word(random);
+            case 1: return String.valueOf(random.nextInt(1000));
+            default: return String.format("%.2f", random.nextDouble() * 1000);
+        }
+    }
+    
+    private static String capitalize(String text) {
+        return text.isEmpty() ? text : Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+    
+    /**
+     * A 640x480 PNG with a gradient and a few shapes, so it compresses like a real picture rather than a flat fill
+     */
+    private static byte[] image(Random random) throws IOException {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(random.nextInt(0xFFFFFF)),
+            640, 480, new Color(random.nextInt(0xFFFFFF))));
+        g.fillRect(0, 0, 640, 480);
+        for (int i = 0; i < 12; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillOval(random.nextInt(600), random.nextInt(440), 20 + random.nextInt(200), 20 + random.nextInt(200));
+        }
+        g.dispose();
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV or TSV one record at a time. Fields may be quoted with double
+ * quotes, in which case they can hold delimiters, line breaks and doubled
+ * quotes. Line endings may be \n, \r\n or \r.
+ */
+public class DelimitedTextReader {
+    
+    private final Reader in;
+    private final char delimiter;
+    private final char[] buffer = new char[64 * 1024];
+    private int length;
+    private int pos;
+    private boolean started;
+    
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    
+    public DelimitedTextReader(Reader in, char delimiter) {
+        this.in = in;
+        this.delimiter = delimiter;
+    }
+    
+    /**
+     * Delimiter for a file name: tab for .tsv and .tab, otherwise comma
+     */
+    public static char delimiterFor(String fileName) {
+        String name = fileName.toLowerCase();
+        return name.endsWith(".tsv") || name.endsWith(".tab") ? '\t' : ',';
+    }
+    
+    /**
+     * The next record's fields, or null at the end of the input
+     */
+    public String[] next() throws IOException {
+        if (!started) {
+            started = true;
+            // Skip a byte order mark, as Excel writes on UTF-8 CSV
+            if (peek() == '\uFEFF') pos++;
+        }
+        if (peek() == -1) {
+            return null;
+        }
+        
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        
+        while (true) {
+            int c = read();
+            if (quoted) {
+                if (c == -1) {
+                    break; // Unterminated quote: keep what there is
+                } else if (c == '"') {
+                    if (peek() == '"') {
+                        pos++;
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == delimiter) {
+                endField();
+            } else if (c == '\n' || c == -1) {
+                break;
+            } else if (c == '\r') {
+                if (peek() == '\n') pos++;
+                break;
+            } else {
+                field.append((char) c);
+            }
+        }
+        
+        endField();
+        return fields.toArray(new String[0]);
+    }
+    
+    private void endField() {
+        fields.add(field.toString());
+        field.setLength(0);
+    }
+    
+    private int read() throws IOException {
+        int c = peek();
+        if (c != -1) pos++;
+        return c;
+    }
+    
+    private int peek() throws IOException {
+        if (pos == length) {
+            length = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (length <= 0) {
+                length = 0;
+                return -1;
+            }
+        }
+        return buffer[pos];
+    }
+}
@@ -0,0 +1,233 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Format independent form of a converted file: a flat list of text, table
+ * and image blocks. Converters produce it, DocumentRenderer turns it into
+ * iText elements. It holds no iText or POI objects, so a parsed file can be
+ * cached, serialized, rendered into several documents or handed from a
+ * parsing thread to a rendering thread.
+ */
+public class DocumentModel implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Receives blocks in document order
+     */
+    public interface Sink {
+        void block(Block block) throws Exception;
+    }
+    
+    /**
+     * Something that emits blocks, such as a file converter
+     */
+    public interface Source {
+        void emit(Sink sink) throws Exception;
+    }
+    
+    public enum Style { HEADING, BODY, MONOSPACE }
+    
+    public abstract static class Block implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        float spacingBefore;
+        float spacingAfter;
+        
+        Block spacing(float before, float after) {
+            spacingBefore = before;
+            spacingAfter = after;
+            return this;
+        }
+    }
+    
+    /**
+     * A span of text sharing one weight and slant
+     */
+    public static class Run implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        final String text;
+        final boolean bold;
+        final boolean italic;
+        
+        public Run(String text, boolean bold, boolean italic) {
+            this.text = text;
+            this.bold = bold;
+            this.italic = italic;
+        }
+    }
+    
+    /**
+     * A paragraph or heading. Headings have a level, 1 being the file title.
+     */
+    public static class TextBlock extends Block {
+        private static final long serialVersionUID = 1L;
+        
+        final Style style;
+        final int level;
+        final float fontSize;
+        final List<Run> runs;
+        
+        public TextBlock(Style style, int level, float fontSize, List<Run> runs) {
+            this.style = style;
+            this.level = level;
+            this.fontSize = fontSize;
+            this.runs = runs;
+        }
+        
+        public static TextBlock heading(int level, String text) {
+            return new TextBlock(Style.HEADING, level, level <= 1 ? 14 : 12,
+                Collections.singletonList(new Run(text, true, false)));
+        }
+        
+        public static TextBlock plain(Style style, float fontSize, String text) {
+            return new TextBlock(style, 0, fontSize, Collections.singletonList(new Run(text, false, false)));
+        }
+        
+        public String getText() {
+            StringBuilder sb = new StringBuilder();
+            for (Run run : runs) {
+                sb.append(run.text);
+            }
+            return sb.toString();
+        }
+    }
+    
+    /**
+     * A grid of plain text cells; rows shorter than the column count are padded when rendered
+     */
+    public static class TableBlock extends Block {
+        private static final long serialVersionUID = 1L;
+        
+        final int columns;
+        final List<String[]> rows;
+        final float fontSize;
+        final float padding;
+        
+        public TableBlock(int columns, List<String[]> rows, float fontSize, float padding) {
+            this.columns = columns;
+            this.rows = rows;
+            this.fontSize = fontSize;
+            this.padding = padding;
+        }
+    }
+    
+    /**
+     * Encoded image bytes (PNG, JPEG, GIF, ...) as found in the source file.
+     * Resampling for the rendered size starts as soon as the block is made,
+     * so a document's images are resampled in parallel while parsing goes on.
+     */
+    public static class ImageBlock extends Block {
+        private static final long serialVersionUID = 1L;
+        
+        final byte[] data;
+        private transient Future<byte[]> fitted;
+        
+        public ImageBlock(byte[] data) {
+            this.data = data;
+            this.fitted = ImagePipeline.fitLater(data, DocumentRenderer.IMAGE_WIDTH, DocumentRenderer.IMAGE_HEIGHT);
+        }
+        
+        /**
+         * The image resampled for the rendered size, waiting for it if needed
+         */
+        byte[] fittedData() throws InterruptedException {
+            if (fitted == null) {
+                // Deserialized; fit it now
+                fitted = ImagePipeline.fitLater(data, DocumentRenderer.IMAGE_WIDTH, DocumentRenderer.IMAGE_HEIGHT);
+            }
+            try {
+                return fitted.get();
+            } catch (ExecutionException e) {
+                return data;
+            }
+        }
+    }
+    
+    private final List<Block> blocks = new ArrayList<>();
+    
+    public void block(Block block) {
+        blocks.add(block);
+    }
+    
+    public List<Block> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+    
+    /**
+     * Replays the blocks into another sink, e.g. a renderer
+     */
+    public void emit(Sink sink) throws Exception {
+        for (Block block : blocks) {
+            sink.block(block);
+        }
+    }
+    
+    /**
+     * Runs the source on its own thread and delivers its blocks to the sink on
+     * the calling thread, so parsing the next part of a file overlaps with
+     * rendering the previous one. At most {@code capacity} blocks are buffered.
+     * If either side fails the other is stopped and the first failure is thrown.
+     */
+    public static void pipe(Source source, Sink sink, int capacity) throws Exception {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(capacity);
+        Object end = new Object();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        
+        Thread parser = new Thread(() -> {
+            try {
+                source.emit(block -> put(queue, block, abandoned));
+            } catch (Throwable t) {
+                failure.set(t);
+            } finally {
+                try {
+                    put(queue, end, abandoned);
+                } catch (InterruptedException e) {
+                    // The sink has already given up
+                }
+            }
+        }, "document-parser");
+        parser.setDaemon(true);
+        parser.start();
+        
+        try {
+            Object item;
+            while ((item = queue.take()) != end) {
+                sink.block((Block) item);
+            }
+        } catch (Throwable t) {
+            // Errors too (out of memory mid-render), so the parser never blocks on a dead sink
+            abandoned.set(true);
+            parser.interrupt();
+            throw t;
+        }
+        
+        parser.join();
+        Throwable t = failure.get();
+        if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw (Exception) t;
+        }
+    }
+    
+    private static void put(BlockingQueue<Object> queue, Object item, AtomicBoolean abandoned) throws InterruptedException {
+        // Poll rather than block forever in case the sink stopped taking
+        while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+            if (abandoned.get()) {
+                throw new InterruptedException("Renderer stopped");
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recently parsed files, so adding the same file twice or generating the PDF
+ * again renders the cached model instead of running POI a second time.
+ * Entries are keyed by path, size, modification time and selection, so an
+ * edited file is parsed afresh. Models are softly held and give way under
+ * memory pressure.
+ */
+public class DocumentModelCache {
+    
+    private static final int MAX_ENTRIES = 32;
+    
+    private static final Map<String, SoftReference<DocumentModel>> models =
+        new LinkedHashMap<String, SoftReference<DocumentModel>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SoftReference<DocumentModel>> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    
+    private static volatile boolean enabled = true;
+    
+    /**
+     * Turns caching off, so every conversion parses its file; used by LoadRunner
+     */
+    public static void setEnabled(boolean enabled) {
+        DocumentModelCache.enabled = enabled;
+        if (!enabled) {
+            synchronized (DocumentModelCache.class) {
+                models.clear();
+            }
+        }
+    }
+    
+    /**
+     * Returns the cached model for this file and selection, or null
+     */
+    public static synchronized DocumentModel get(File file, ConversionSelection selection) throws IOException {
+        if (!enabled) return null;
+        String key = keyOf(file, selection);
+        SoftReference<DocumentModel> ref = models.get(key);
+        DocumentModel model = ref == null ? null : ref.get();
+        if (ref != null && model == null) {
+            models.remove(key);
+        }
+        return model;
+    }
+    
+    public static synchronized void put(File file, ConversionSelection selection, DocumentModel model) throws IOException {
+        if (!enabled) return;
+        models.put(keyOf(file, selection), new SoftReference<>(model));
+    }
+    
+    private static String keyOf(File file, ConversionSelection selection) throws IOException {
+        return file.getCanonicalPath() + '|' + file.length() + '|' + file.lastModified()
+            + '|' + selection.getDescription();
+    }
+}
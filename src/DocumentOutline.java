@@ -0,0 +1,168 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Chunk;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.FontFactory;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfAction;
+import com.itextpdf.text.pdf.PdfDestination;
+import com.itextpdf.text.pdf.PdfOutline;
+import com.itextpdf.text.pdf.PdfPageEventHelper;
+import com.itextpdf.text.pdf.PdfPageLabels;
+import com.itextpdf.text.pdf.PdfWriter;
+import com.itextpdf.text.pdf.draw.DottedLineSeparator;
+
+/**
+ * Bookmarks and a table of contents for a converted file's headings (the
+ * file title, then each sheet or slide), built in the one rendering pass.
+ *
+ * The renderer tags each heading's text with {@link #tag}; when iText lays
+ * the tagged text out on a page it reports the page and position through
+ * onGenericTag, and the bookmark is added there and then. Nothing is
+ * rendered twice to find out page numbers.
+ *
+ * The contents pages are written after everything else, when every page
+ * number is known, and then moved to the front of the page tree. Page
+ * labels number them i, ii, ... and start the content at 1 again, so the
+ * numbers listed match what a viewer shows. That needs the writer in linear
+ * page mode, set by {@link #attach} before the document is opened.
+ */
+public class DocumentOutline extends PdfPageEventHelper {
+    
+    // A shorter document is easy enough to scroll; -Dpdfgen.toc.minPages
+    public static final int TOC_MIN_PAGES = Integer.getInteger("pdfgen.toc.minPages", 10);
+    
+    /**
+     * A heading as it was placed
+     */
+    private static class Entry {
+        final int level;
+        final String title;
+        final int page;
+        final float top;
+        
+        Entry(int level, String title, int page, float top) {
+            this.level = level;
+            this.title = title;
+            this.page = page;
+            this.top = top;
+        }
+    }
+    
+    private final Map<String, Integer> pendingLevels = new HashMap<>();
+    private final Map<String, String> pendingTitles = new HashMap<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private int tagCount;
+    
+    // Latest bookmark at each level, parents for deeper ones
+    private final Map<Integer, PdfOutline> latest = new HashMap<>();
+    
+    public void attach(PdfWriter writer) {
+        writer.setLinearPageMode();
+        writer.setPageEvent(this);
+    }
+    
+    /**
+     * A generic tag for a heading's first chunk, so its placement is reported here
+     */
+    public String tag(int level, String title) {
+        String tag = "outline-" + tagCount++;
+        pendingLevels.put(tag, level);
+        pendingTitles.put(tag, title);
+        return tag;
+    }
+    
+    @Override
+    public void onGenericTag(PdfWriter writer, Document document, Rectangle rect, String tag) {
+        // A heading wrapped over two lines reports each; the first is where it starts
+        Integer level = pendingLevels.remove(tag);
+        if (level == null) return;
+        String title = pendingTitles.remove(tag);
+        
+        int page = writer.getPageNumber();
+        float top = rect.getTop();
+        entries.add(new Entry(level, title, page, top));
+        
+        PdfOutline parent = writer.getRootOutline();
+        for (int above = level - 1; above >= 1; above--) {
+            if (latest.containsKey(above)) {
+                parent = latest.get(above);
+                break;
+            }
+        }
+        PdfOutline outline = new PdfOutline(parent, destination(writer, page, top), title, level <= 1);
+        latest.put(level, outline);
+        latest.keySet().removeIf(deeper -> deeper > level);
+    }
+    
+    /**
+     * Adds contents pages listing the headings at the front of a document
+     * long enough to need them, and returns how many. Call once everything
+     * else has been added, before closing.
+     */
+    public int addTableOfContents(Document document, PdfWriter writer) throws DocumentException {
+        if (entries.size() < 2 || writer.getPageNumber() < TOC_MIN_PAGES) return 0;
+        
+        document.newPage();
+        int firstContentsPage = writer.getPageNumber();
+        
+        Font titleFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.DARK_GRAY);
+        Paragraph heading = new Paragraph("Contents", titleFont);
+        heading.setSpacingAfter(10f);
+        document.add(heading);
+        
+        Font entryFont = PdfFonts.getFont(FontFactory.HELVETICA, 11, BaseColor.BLACK);
+        for (Entry entry : entries) {
+            PdfAction link = PdfAction.gotoLocalPage(entry.page, destinationAt(entry.top), writer);
+            Paragraph line = new Paragraph();
+            line.setIndentationLeft(15f * Math.max(0, entry.level - 1));
+            line.add(linked(new Chunk(entry.title, entryFont), link));
+            line.add(new Chunk(new DottedLineSeparator()));
+            line.add(linked(new Chunk(String.valueOf(entry.page), entryFont), link));
+            document.add(line);
+        }
+        // Ends the last contents page, so it is counted below
+        document.newPage();
+        
+        // Move the contents pages in front of the content
+        int total = writer.reorderPages(null);
+        int contentsPages = total - firstContentsPage + 1;
+        int[] order = new int[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i < contentsPages ? firstContentsPage + i : i - contentsPages + 1;
+        }
+        writer.reorderPages(order);
+        
+        PdfPageLabels labels = new PdfPageLabels();
+        labels.addPageLabel(1, PdfPageLabels.LOWERCASE_ROMAN_NUMERALS);
+        labels.addPageLabel(contentsPages + 1, PdfPageLabels.DECIMAL_ARABIC_NUMERALS, null, 1);
+        writer.setPageLabels(labels);
+        return contentsPages;
+    }
+    
+    private static Chunk linked(Chunk chunk, PdfAction link) {
+        chunk.setAction(link);
+        return chunk;
+    }
+    
+    /**
+     * A destination on the given page; page references follow their page when pages are reordered
+     */
+    private static PdfDestination destination(PdfWriter writer, int page, float top) {
+        PdfDestination destination = destinationAt(top);
+        destination.addPage(writer.getPageReference(page));
+        return destination;
+    }
+    
+    private static PdfDestination destinationAt(float top) {
+        // Scrolled to the heading, keeping the current zoom
+        return new PdfDestination(PdfDestination.XYZ, -1, top, 0);
+    }
+}
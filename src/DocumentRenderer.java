@@ -0,0 +1,143 @@
+import java.io.IOException;
+
+import com.itextpdf.text.BadElementException;
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Chunk;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.FontFactory;
+import com.itextpdf.text.Image;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+
+/**
+ * Lays out DocumentModel blocks into an iText document as they arrive
+ */
+public class DocumentRenderer implements DocumentModel.Sink {
+    
+    // Rows handed to the document at a time while a large table is laid out
+    private static final int TABLE_FLUSH_ROWS = 50;
+    
+    // Box images are scaled to fit
+    static final float IMAGE_WIDTH = 500f;
+    static final float IMAGE_HEIGHT = 400f;
+    
+    private final Document document;
+    private final DocumentOutline outline;
+    
+    public DocumentRenderer(Document document) {
+        this(document, null);
+    }
+    
+    /**
+     * A renderer that also reports where headings land to the outline, for bookmarks and contents
+     */
+    public DocumentRenderer(Document document, DocumentOutline outline) {
+        this.document = document;
+        this.outline = outline;
+    }
+    
+    /**
+     * Renders a whole model
+     */
+    public void render(DocumentModel model) throws Exception {
+        model.emit(this);
+    }
+    
+    @Override
+    public void block(DocumentModel.Block block) throws Exception {
+        if (block instanceof DocumentModel.TextBlock) {
+            addText((DocumentModel.TextBlock) block);
+        } else if (block instanceof DocumentModel.TableBlock) {
+            addTable((DocumentModel.TableBlock) block);
+        } else if (block instanceof DocumentModel.ImageBlock) {
+            addImage((DocumentModel.ImageBlock) block);
+        }
+    }
+    
+    private void addText(DocumentModel.TextBlock text) throws Exception {
+        // Same leading as new Paragraph(text, font) gives a single run
+        Paragraph para = new Paragraph(text.fontSize * 1.5f);
+        String tag = outline != null && text.style == DocumentModel.Style.HEADING
+            ? outline.tag(text.level, text.getText()) : null;
+        for (DocumentModel.Run run : text.runs) {
+            Chunk chunk = new Chunk(run.text, fontFor(text, run));
+            if (tag != null && !run.text.isEmpty()) {
+                chunk.setGenericTag(tag);
+                tag = null;
+            }
+            para.add(chunk);
+        }
+        para.setSpacingBefore(text.spacingBefore);
+        para.setSpacingAfter(text.spacingAfter);
+        document.add(para);
+    }
+    
+    private void addTable(DocumentModel.TableBlock table) throws Exception {
+        if (table.columns == 0) return;
+        
+        PdfPTable pdfTable = new PdfPTable(table.columns);
+        pdfTable.setWidthPercentage(100);
+        // iText applies both spacings on every add: before only on the first, after only on the last
+        pdfTable.setSpacingBefore(table.spacingBefore);
+        pdfTable.setComplete(false);
+        
+        Font cellFont = PdfFonts.getFont(FontFactory.HELVETICA, table.fontSize, BaseColor.BLACK);
+        int rowCount = 0;
+        
+        for (String[] cells : table.rows) {
+            // Lay out finished rows now so long tables produce pages as they go;
+            // the last rows are kept back for the final add, which carries spacingAfter
+            if (rowCount > 0 && rowCount % TABLE_FLUSH_ROWS == 0) {
+                document.add(pdfTable);
+                pdfTable.setSpacingBefore(0f);
+            }
+            rowCount++;
+            
+            for (int j = 0; j < table.columns; j++) {
+                String cellValue = j < cells.length ? cells[j] : "";
+                PdfPCell pdfCell = new PdfPCell(new Phrase(cellValue, cellFont));
+                pdfCell.setPadding(table.padding);
+                pdfTable.addCell(pdfCell);
+            }
+        }
+        
+        pdfTable.setSpacingAfter(table.spacingAfter);
+        pdfTable.setComplete(true);
+        document.add(pdfTable);
+    }
+    
+    private void addImage(DocumentModel.ImageBlock block) throws Exception {
+        Image image;
+        try {
+            image = Image.getInstance(block.fittedData());
+        } catch (IOException | BadElementException e) {
+            // Formats iText can't read, such as EMF, are left out
+            return;
+        }
+        
+        image.scaleToFit(IMAGE_WIDTH, IMAGE_HEIGHT);
+        image.setAlignment(Element.ALIGN_CENTER);
+        image.setSpacingBefore(block.spacingBefore);
+        image.setSpacingAfter(block.spacingAfter);
+        document.add(image);
+    }
+    
+    private static Font fontFor(DocumentModel.TextBlock text, DocumentModel.Run run) {
+        switch (text.style) {
+            case HEADING:
+                return PdfFonts.getFont(FontFactory.HELVETICA_BOLD, text.fontSize,
+                    text.level <= 1 ? BaseColor.DARK_GRAY : BaseColor.BLUE);
+            case MONOSPACE:
+                return PdfFonts.getFont(FontFactory.COURIER, text.fontSize, BaseColor.BLACK);
+            default:
+                String name = run.bold
+                    ? (run.italic ? FontFactory.HELVETICA_BOLDOBLIQUE : FontFactory.HELVETICA_BOLD)
+                    : (run.italic ? FontFactory.HELVETICA_OBLIQUE : FontFactory.HELVETICA);
+                return PdfFonts.getFont(name, text.fontSize, BaseColor.BLACK);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Element;
+
+/**
+ * Background pool for the expensive half of building a PDF element: fetching
+ * and decoding images, parsing Office files, building table cells. Elements
+ * start preparing as soon as they are added, concurrently with each other, so
+ * by the time the PDF is generated assembly only has to place finished iText
+ * objects and takes about as long as the slowest element rather than the sum.
+ */
+public class ElementPreparer {
+    
+    /**
+     * What assembly does with a prepared element: add ready-made objects to the document
+     */
+    public interface Placement {
+        void addTo(Document document) throws Exception;
+    }
+    
+    private static final ExecutorService pool = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "element-preparer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    
+    /**
+     * Placement that adds the given elements in order
+     */
+    public static Placement placing(Element... elements) {
+        return document -> {
+            for (Element element : elements) {
+                document.add(element);
+            }
+        };
+    }
+    
+    public static Future<Placement> submit(Callable<Placement> preparation) {
+        return pool.submit(preparation);
+    }
+    
+    /**
+     * Waits for a preparation and returns its placement, rethrowing what it failed with
+     */
+    public static Placement await(Future<Placement> prepared) throws Exception {
+        try {
+            return prepared.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+}
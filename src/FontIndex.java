@@ -0,0 +1,348 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index of installed font files by family and style, so finding a font
+ * doesn't mean opening every file in the font directories.
+ *
+ * Reading the names out of each file, as FontFactory.registerDirectories
+ * does, takes seconds on a machine with a few hundred fonts, every start.
+ * The index is built once and saved (~/.pdfgen/font-index.txt, or
+ * -Dpdfgen.fonts.index=FILE). Later starts only list the directories and
+ * compare each file's size and modification time with the index: new and
+ * changed files are read, removed ones dropped, and the rest taken from the
+ * index as they are. Only the name and head tables are read from a file,
+ * not the whole font.
+ *
+ * Directories are searched in the order given: where two offer the same
+ * family and style, the earlier one wins. A file reached through more than
+ * one directory is indexed once.
+ *
+ * Handles TrueType and OpenType files and collections (.ttc); a face in a
+ * collection has the path iText expects, "file.ttc,index".
+ */
+public class FontIndex {
+    
+    public static final int REGULAR = 0;
+    public static final int BOLD = 1;
+    public static final int ITALIC = 2;
+    public static final int BOLD_ITALIC = 3;
+    
+    private static final String HEADER = "# pdfgen font index 1: path, modified, length, face, style, subfamily, family";
+    
+    private static final String[] STANDARD_SUBFAMILIES = {
+        "regular", "normal", "book", "roman", "bold", "italic", "oblique", "bold italic", "bold oblique"
+    };
+    
+    /**
+     * One face of a font file, as it was when indexed
+     */
+    private static class Face {
+        final String path;
+        final long modified;
+        final long length;
+        final int index;       // Position in a collection, -1 for a single font
+        final int style;       // -1 for a file with no usable face, so it isn't read again
+        final String subfamily;
+        final String family;
+        int root;              // Position of the directory it was found under; not saved
+        
+        Face(String path, long modified, long length, int index, int style, String subfamily, String family) {
+            this.path = path;
+            this.modified = modified;
+            this.length = length;
+            this.index = index;
+            this.style = style;
+            this.subfamily = subfamily;
+            this.family = family;
+        }
+        
+        String fontPath() {
+            return index < 0 ? path : path + "," + index;
+        }
+    }
+    
+    // Lower-case family name to [regular, bold, italic, bold italic] font paths
+    private final Map<String, String[]> families = new HashMap<>();
+    
+    private final int faceCount;
+    
+    private FontIndex(List<Face> faces) {
+        Map<String, Face[]> chosen = new HashMap<>();
+        for (Face face : faces) {
+            if (face.style < 0) continue;
+            Face[] styles = chosen.computeIfAbsent(face.family.toLowerCase(), key -> new Face[4]);
+            // Two faces with one family and style (Light, Condensed): an earlier directory
+            // wins, and within one directory the plainly named face
+            Face other = styles[face.style];
+            if (other == null || (face.root == other.root
+                    && isStandard(face.subfamily) && !isStandard(other.subfamily))) {
+                styles[face.style] = face;
+            }
+        }
+        for (Map.Entry<String, Face[]> entry : chosen.entrySet()) {
+            String[] paths = new String[4];
+            for (int i = 0; i < 4; i++) {
+                Face face = entry.getValue()[i];
+                paths[i] = face == null ? null : face.fontPath();
+            }
+            families.put(entry.getKey(), paths);
+        }
+        faceCount = faces.size();
+    }
+    
+    /**
+     * Font paths of a family by style (REGULAR to BOLD_ITALIC), any of them
+     * null if not installed, or null if the family isn't
+     */
+    public String[] family(String name) {
+        String[] paths = families.get(name.toLowerCase());
+        return paths == null ? null : paths.clone();
+    }
+    
+    public int size() {
+        return faceCount;
+    }
+    
+    /**
+     * Indexes the font files under the given directories, reusing the saved
+     * index for files that haven't changed, and saves it again if anything did
+     */
+    public static FontIndex load(List<File> directories, File indexFile) {
+        Map<String, List<Face>> saved = read(indexFile);
+        
+        List<Face> faces = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        boolean changed = false;
+        for (int root = 0; root < directories.size(); root++) {
+            List<File> fontFiles = new ArrayList<>();
+            collect(directories.get(root), fontFiles, 0);
+            // Sorted within a directory only, so the directories keep their order
+            Collections.sort(fontFiles);
+            
+            for (File file : fontFiles) {
+                // Overlapping directories or links lead to the same file again
+                if (!seen.add(canonicalPath(file))) continue;
+                
+                List<Face> fileFaces = saved.remove(file.getPath());
+                if (fileFaces == null || fileFaces.get(0).modified != file.lastModified()
+                        || fileFaces.get(0).length != file.length()) {
+                    fileFaces = readFaces(file);
+                    changed = true;
+                }
+                for (Face face : fileFaces) {
+                    face.root = root;
+                }
+                faces.addAll(fileFaces);
+            }
+        }
+        // Anything left in the saved index has been removed
+        changed |= !saved.isEmpty();
+        
+        if (changed) {
+            write(indexFile, faces);
+        }
+        return new FontIndex(faces);
+    }
+    
+    private static void collect(File dir, List<File> fontFiles, int depth) {
+        File[] files = dir.listFiles();
+        // Font directories are shallow; the limit only guards against link cycles
+        if (files == null || depth > 8) return;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collect(file, fontFiles, depth + 1);
+            } else {
+                String name = file.getName().toLowerCase();
+                if (name.endsWith(".ttf") || name.endsWith(".otf") || name.endsWith(".ttc")) {
+                    fontFiles.add(file);
+                }
+            }
+        }
+    }
+    
+    private static String canonicalPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+    
+    /**
+     * The saved index by file path; empty if there is none or it can't be read
+     */
+    private static Map<String, List<Face>> read(File indexFile) {
+        Map<String, List<Face>> saved = new HashMap<>();
+        if (!indexFile.isFile()) return saved;
+        
+        try (BufferedReader in = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) return saved;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 7) continue;
+                Face face = new Face(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                    Integer.parseInt(fields[3]), Integer.parseInt(fields[4]), fields[5], fields[6]);
+                saved.computeIfAbsent(face.path, path -> new ArrayList<>()).add(face);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Rebuild it
+            saved.clear();
+        }
+        return saved;
+    }
+    
+    private static void write(File indexFile, List<Face> faces) {
+        try {
+            File dir = indexFile.getAbsoluteFile().getParentFile();
+            dir.mkdirs();
+            // Written aside and moved into place, so another process never reads half an index
+            File temp = File.createTempFile("font-index", ".tmp", dir);
+            try (BufferedWriter out = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                out.write(HEADER);
+                out.newLine();
+                for (Face face : faces) {
+                    out.write(face.path + "\t" + face.modified + "\t" + face.length + "\t" + face.index + "\t"
+                        + face.style + "\t" + face.subfamily + "\t" + face.family);
+                    out.newLine();
+                }
+            }
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The index is rebuilt next time
+            System.err.println("Could not save font index " + indexFile + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * The faces in a font file; one with style -1 if it can't be read
+     */
+    private static List<Face> readFaces(File file) {
+        String path = file.getPath();
+        long modified = file.lastModified();
+        long length = file.length();
+        List<Face> faces = new ArrayList<>();
+        
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.readInt() == 0x74746366) { // 'ttcf'
+                in.readInt();
+                int count = in.readInt();
+                long[] offsets = new long[count];
+                for (int i = 0; i < count; i++) {
+                    offsets[i] = in.readInt() & 0xFFFFFFFFL;
+                }
+                for (int i = 0; i < count; i++) {
+                    faces.add(readFace(in, offsets[i], path, modified, length, i));
+                }
+            } else {
+                faces.add(readFace(in, 0, path, modified, length, -1));
+            }
+        } catch (IOException | RuntimeException e) {
+            faces.clear();
+            faces.add(new Face(path, modified, length, -1, -1, "", ""));
+        }
+        return faces;
+    }
+    
+    private static Face readFace(RandomAccessFile in, long offset, String path, long modified, long length,
+            int index) throws IOException {
+        in.seek(offset + 4);
+        int tables = in.readUnsignedShort();
+        in.skipBytes(6);
+        long nameOffset = -1;
+        long headOffset = -1;
+        for (int i = 0; i < tables; i++) {
+            int tag = in.readInt();
+            in.readInt();
+            long tableOffset = in.readInt() & 0xFFFFFFFFL;
+            in.readInt();
+            if (tag == 0x6E616D65) nameOffset = tableOffset; // 'name'
+            if (tag == 0x68656164) headOffset = tableOffset; // 'head'
+        }
+        if (nameOffset < 0 || headOffset < 0) {
+            return new Face(path, modified, length, index, -1, "", "");
+        }
+        
+        in.seek(headOffset + 44);
+        int macStyle = in.readUnsignedShort();
+        
+        Map<Integer, String> names = readNames(in, nameOffset);
+        String family = names.get(1);
+        String subfamily = names.getOrDefault(2, "");
+        if (family == null || family.isEmpty()) {
+            return new Face(path, modified, length, index, -1, "", "");
+        }
+        
+        String lower = subfamily.toLowerCase();
+        int style = macStyle & (BOLD | ITALIC);
+        if (lower.contains("bold")) style |= BOLD;
+        if (lower.contains("italic") || lower.contains("oblique")) style |= ITALIC;
+        return new Face(path, modified, length, index, style, clean(subfamily), clean(family));
+    }
+    
+    /**
+     * Family (1) and subfamily (2) names, preferring US English Windows
+     * names, then any Windows or Unicode name, then Macintosh Roman
+     */
+    private static Map<Integer, String> readNames(RandomAccessFile in, long nameOffset) throws IOException {
+        in.seek(nameOffset + 2);
+        int count = in.readUnsignedShort();
+        long strings = nameOffset + in.readUnsignedShort();
+        
+        Map<Integer, String> names = new TreeMap<>();
+        Map<Integer, Integer> ranks = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            in.seek(nameOffset + 6 + 12L * i);
+            int platform = in.readUnsignedShort();
+            int encoding = in.readUnsignedShort();
+            int language = in.readUnsignedShort();
+            int nameId = in.readUnsignedShort();
+            int length = in.readUnsignedShort();
+            int stringOffset = in.readUnsignedShort();
+            if (nameId != 1 && nameId != 2) continue;
+            
+            int rank;
+            if (platform == 3 && language == 0x409) rank = 3;
+            else if (platform == 3 || platform == 0) rank = 2;
+            else if (platform == 1 && encoding == 0) rank = 1;
+            else continue;
+            if (ranks.getOrDefault(nameId, 0) >= rank) continue;
+            
+            byte[] bytes = new byte[length];
+            in.seek(strings + stringOffset);
+            in.readFully(bytes);
+            names.put(nameId, new String(bytes, rank == 1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_16BE));
+            ranks.put(nameId, rank);
+        }
+        return names;
+    }
+    
+    private static boolean isStandard(String subfamily) {
+        for (String standard : STANDARD_SUBFAMILIES) {
+            if (standard.equalsIgnoreCase(subfamily)) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * A name fit for a tab-separated line
+     */
+    private static String clean(String name) {
+        return name.replaceAll("[\\t\\r\\n\\x00]", " ").trim();
+    }
+}
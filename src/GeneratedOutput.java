@@ -0,0 +1,42 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers which elements went into a generated PDF, so the next generation
+ * to the same file can append just the elements added since
+ */
+public class GeneratedOutput {
+    
+    private final File file;
+    private final List<PDFElement> elements;
+    private final long length;
+    private final long lastModified;
+    
+    public GeneratedOutput(File file, List<PDFElement> elements) {
+        this.file = file.getAbsoluteFile();
+        this.elements = new ArrayList<>(elements);
+        this.length = file.length();
+        this.lastModified = file.lastModified();
+    }
+    
+    /**
+     * How many leading elements of {@code current} are already in {@code output},
+     * or 0 if it has to be generated from scratch: a different file, a file
+     * changed since, or elements removed or reordered.
+     */
+    public int elementsAlreadyIn(File output, List<PDFElement> current) {
+        if (!file.equals(output.getAbsoluteFile()) || file.length() != length || file.lastModified() != lastModified) {
+            return 0;
+        }
+        if (current.size() <= elements.size()) {
+            return 0;
+        }
+        for (int i = 0; i < elements.size(); i++) {
+            if (current.get(i) != elements.get(i)) {
+                return 0;
+            }
+        }
+        return elements.size();
+    }
+}
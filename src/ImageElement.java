@@ -0,0 +1,54 @@
+import java.io.InputStream;
+import java.net.URL;
+
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Image;
+
+/**
+ * An image from a local path or an http(s) URL, scaled to fit the page
+ */
+class ImageElement extends PDFElement {
+    String path;
+    byte[] data; // Encoded image, when it was embedded in a project file
+    
+    ImageElement(String path) {
+        this.path = path;
+    }
+    
+    ImageElement(String path, byte[] data) {
+        this.path = path;
+        this.data = data;
+    }
+    
+    boolean isUrl() {
+        return path.startsWith("http://") || path.startsWith("https://");
+    }
+    
+    @SuppressWarnings("try")
+    ElementPreparer.Placement prepare() throws Exception {
+        // Resampled to what the box below needs, in parallel with other elements
+        Image image;
+        if (data == null && !isUrl()) {
+            // Mapped, and passed through untouched where the PDF can take the file as it is
+            image = ImageSource.open(path).toImage(500f, 400f);
+        } else {
+            byte[] encoded;
+            if (data != null) {
+                encoded = ImagePipeline.fit(data, 500f, 400f);
+            } else {
+                try (InputStream in = new URL(path).openStream()) {
+                    encoded = ImagePipeline.fit(in, 500f, 400f);
+                }
+            }
+            try (PdfMetrics.Timer timer = PdfMetrics.time("decode.image")) {
+                image = Image.getInstance(encoded);
+            }
+        }
+        
+        image.scaleToFit(500f, 400f);
+        image.setAlignment(Element.ALIGN_CENTER);
+        image.setSpacingBefore(10f);
+        image.setSpacingAfter(15f);
+        return ElementPreparer.placing(image);
+    }
+}
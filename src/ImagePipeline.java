@@ -0,0 +1,228 @@
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Resamples images to the resolution they are shown at before they are
+ * embedded. iText embeds an image's bytes as they are and only scales it
+ * when drawing, so a 24-megapixel photo shown 500pt wide would otherwise go
+ * into the PDF at full size.
+ *
+ * An image larger than its placement box needs at the target DPI (150 by
+ * default, -Dpdfgen.image.dpi) is decoded at reduced resolution, scaled
+ * down in halving steps, and re-encoded: JPEG photos as JPEG (quality 0.85,
+ * -Dpdfgen.image.jpegQuality), everything else as PNG, with a palette when it
+ * has 256 colours or fewer. Images that are already small enough, that
+ * ImageIO can't read (CMYK JPEGs, EMF), or that would come out bigger are
+ * left as they are. The result has fewer pixels but the same aspect ratio,
+ * to the nearest pixel, so scaleToFit still places it in the same box.
+ */
+public class ImagePipeline {
+    
+    public static final float DPI = Float.parseFloat(System.getProperty("pdfgen.image.dpi", "150"));
+    
+    public static final float JPEG_QUALITY = Float.parseFloat(System.getProperty("pdfgen.image.jpegQuality", "0.85"));
+    
+    // Not worth re-encoding for less than this much reduction in width
+    private static final double MIN_REDUCTION = 0.9;
+    
+    private static final ExecutorService pool = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "image-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+    
+    /**
+     * Reads an image from a stream and fits it to a box of the given size in points
+     */
+    public static byte[] fit(InputStream in, float boxWidth, float boxHeight) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            bytes.write(buffer, 0, n);
+        }
+        return fit(bytes.toByteArray(), boxWidth, boxHeight);
+    }
+    
+    /**
+     * Starts fitting an image on the pipeline's threads, so several images are resampled at once
+     */
+    public static Future<byte[]> fitLater(byte[] encoded, float boxWidth, float boxHeight) {
+        return pool.submit(() -> fit(encoded, boxWidth, boxHeight));
+    }
+    
+    /**
+     * Returns the image re-encoded at the resolution a box of the given size
+     * in points needs, or the original bytes if that wouldn't make it smaller
+     */
+    public static byte[] fit(byte[] encoded, float boxWidth, float boxHeight) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded))) {
+            byte[] resampled = resample(in, boxWidth, boxHeight);
+            return resampled != null && resampled.length < encoded.length ? resampled : encoded;
+        } catch (IOException e) {
+            return encoded;
+        }
+    }
+    
+    /**
+     * Whether an image this many pixels in size has more than a box of the
+     * given size in points needs
+     */
+    public static boolean needsResampling(int width, int height, float boxWidth, float boxHeight) {
+        return scaleFor(width, height, boxWidth, boxHeight) <= MIN_REDUCTION;
+    }
+    
+    /**
+     * Pixels needed per pixel of the image, to show it as large as fits the box like scaleToFit does
+     */
+    private static double scaleFor(int width, int height, float boxWidth, float boxHeight) {
+        return Math.min(boxWidth / width, boxHeight / height) * DPI / 72;
+    }
+    
+    /**
+     * Reads an image and re-encodes it for a box of the given size in points;
+     * null if it has no more pixels than needed or ImageIO can't read it
+     */
+    @SuppressWarnings("try")
+    static byte[] resample(ImageInputStream in, float boxWidth, float boxHeight) {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try (PdfMetrics.Timer timer = PdfMetrics.time("resample.image")) {
+            reader.setInput(in, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if (!needsResampling(width, height, boxWidth, boxHeight)) {
+                return null;
+            }
+            double scale = scaleFor(width, height, boxWidth, boxHeight);
+            int targetWidth = Math.max(1, (int) Math.round(width * scale));
+            int targetHeight = Math.max(1, (int) Math.round(height * scale));
+            
+            // Decode every nth pixel, keeping at least twice the target for the smooth scaling below
+            ImageReadParam param = reader.getDefaultReadParam();
+            int step = Math.max(1, Math.min(width / (2 * targetWidth), height / (2 * targetHeight)));
+            param.setSourceSubsampling(step, step, 0, 0);
+            BufferedImage image = reader.read(0, param);
+            
+            boolean jpeg = reader.getFormatName().equalsIgnoreCase("jpeg");
+            return encode(scaleDown(image, targetWidth, targetHeight), jpeg);
+        } catch (IOException | RuntimeException e) {
+            // Unreadable here doesn't mean unreadable to iText; let it try the original
+            return null;
+        } finally {
+            reader.dispose();
+        }
+    }
+    
+    /**
+     * Halves the size with bilinear filtering until the next step would pass
+     * the target, then scales to it; one bilinear step from far larger would
+     * skip most pixels and alias
+     */
+    private static BufferedImage scaleDown(BufferedImage image, int targetWidth, int targetHeight) {
+        boolean alpha = image.getColorModel().hasAlpha();
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D g = step.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(image, 0, 0, width, height, null);
+            g.dispose();
+            image = step;
+        } while (width > targetWidth || height > targetHeight);
+        
+        return image;
+    }
+    
+    private static byte[] encode(BufferedImage image, boolean jpeg) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (jpeg && !image.getColorModel().hasAlpha()) {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+        } else {
+            BufferedImage palette = image.getColorModel().hasAlpha() ? null : toPalette(image);
+            ImageIO.write(palette != null ? palette : image, "png", bytes);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * The image with an exact palette, or null if it has more than 256 colours
+     */
+    private static BufferedImage toPalette(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        
+        Map<Integer, Integer> indexes = new HashMap<>();
+        for (int pixel : pixels) {
+            if (!indexes.containsKey(pixel)) {
+                if (indexes.size() == 256) return null;
+                indexes.put(pixel, indexes.size());
+            }
+        }
+        
+        int[] colours = new int[indexes.size()];
+        for (Map.Entry<Integer, Integer> entry : indexes.entrySet()) {
+            colours[entry.getValue()] = entry.getKey();
+        }
+        int bits = colours.length <= 2 ? 1 : colours.length <= 4 ? 2 : colours.length <= 16 ? 4 : 8;
+        IndexColorModel model = new IndexColorModel(bits, colours.length, colours, 0, false, -1,
+            DataBuffer.TYPE_BYTE);
+        
+        BufferedImage indexed = new BufferedImage(width, height,
+            bits == 8 ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY, model);
+        byte[] row = new byte[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = (byte) (int) indexes.get(pixels[y * width + x]);
+            }
+            // One element per pixel; packed rasters pack them themselves
+            indexed.getRaster().setDataElements(0, y, width, 1, row);
+        }
+        return indexed;
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+import com.itextpdf.text.BadElementException;
+import com.itextpdf.text.Image;
+
+/**
+ * A local image file, memory-mapped rather than read onto the heap.
+ *
+ * JPEG and JPEG 2000 files the PDF can take as they are pass straight
+ * through, undecoded: iText reads only their header when the element is
+ * prepared, so a prepared catalog of photos holds no image data. When the
+ * image is written, iText reads the file again by its URL and holds one
+ * copy of it on the heap while that image's stream is written; iText 5
+ * only takes a byte array, so the mapping can't be handed to it. Other
+ * formats, and JPEGs with far more pixels than their box needs, are decoded
+ * from the mapping by ImagePipeline without copying the file first.
+ *
+ * Java can't unmap a buffer on demand; the mapping goes when the source is
+ * garbage collected, and until then Windows won't let the file be deleted
+ * or replaced. Nothing keeps a source once toImage has returned.
+ */
+public class ImageSource {
+    
+    public enum Format { JPEG, JPEG2000, PNG, GIF, BMP, TIFF, UNKNOWN }
+    
+    private final File file;
+    private final ByteBuffer data;
+    private final Format format;
+    
+    private ImageSource(File file, ByteBuffer data) {
+        this.file = file;
+        this.data = data;
+        this.format = sniff(data);
+    }
+    
+    public static ImageSource open(String path) throws IOException {
+        File file = new File(path);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Image too large to map: " + path);
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ImageSource(file, data);
+        }
+    }
+    
+    public Format getFormat() {
+        return format;
+    }
+    
+    /**
+     * The image for a box of the given size in points: passed through when
+     * possible, otherwise resampled for the box
+     */
+    @SuppressWarnings("try")
+    public Image toImage(float boxWidth, float boxHeight) throws IOException, BadElementException {
+        // ImageIO can't read JPEG 2000, and the PDF can hold it as it is
+        byte[] resampled = format == Format.JPEG2000 ? null
+            : ImagePipeline.resample(new MappedImageInputStream(data), boxWidth, boxHeight);
+        
+        try (PdfMetrics.Timer timer = PdfMetrics.time("decode.image")) {
+            if (resampled != null && resampled.length < data.limit()) {
+                return Image.getInstance(resampled);
+            }
+            // A JPEG's header is all that is read here; the rest is read when it is written
+            return Image.getInstance(file.toURI().toURL());
+        }
+    }
+    
+    private static Format sniff(ByteBuffer data) {
+        int b0 = byteAt(data, 0), b1 = byteAt(data, 1), b2 = byteAt(data, 2), b3 = byteAt(data, 3);
+        if (b0 == 0xFF && b1 == 0xD8) return Format.JPEG;
+        if (b0 == 0xFF && b1 == 0x4F && b2 == 0xFF && b3 == 0x51) return Format.JPEG2000; // Bare codestream
+        if (b0 == 0 && b1 == 0 && b2 == 0 && b3 == 0x0C && byteAt(data, 4) == 'j' && byteAt(data, 5) == 'P') return Format.JPEG2000;
+        if (b0 == 0x89 && b1 == 'P' && b2 == 'N' && b3 == 'G') return Format.PNG;
+        if (b0 == 'G' && b1 == 'I' && b2 == 'F') return Format.GIF;
+        if (b0 == 'B' && b1 == 'M') return Format.BMP;
+        if ((b0 == 'I' && b1 == 'I' && b2 == 42) || (b0 == 'M' && b1 == 'M' && b3 == 42)) return Format.TIFF;
+        return Format.UNKNOWN;
+    }
+    
+    private static int byteAt(ByteBuffer data, int index) {
+        return index < data.limit() ? data.get(index) & 0xFF : -1;
+    }
+    
+    /**
+     * Lets ImageIO read straight from the mapping; its own streams would cache what they read on the heap
+     */
+    private static class MappedImageInputStream extends ImageInputStreamImpl {
+        private final ByteBuffer data;
+        
+        MappedImageInputStream(ByteBuffer data) {
+            this.data = data.duplicate();
+        }
+        
+        @Override
+        public int read() {
+            if (streamPos >= data.limit()) return -1;
+            bitOffset = 0;
+            return data.get((int) streamPos++) & 0xFF;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (streamPos >= data.limit()) return -1;
+            int n = (int) Math.min(len, data.limit() - streamPos);
+            data.position((int) streamPos);
+            data.get(b, off, n);
+            streamPos += n;
+            bitOffset = 0;
+            return n;
+        }
+        
+        @Override
+        public long length() {
+            return data.limit();
+        }
+    }
+}
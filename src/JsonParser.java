@@ -0,0 +1,198 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Small JSON reader for document specs, so the command-line renderer needs
+ * no extra library. Objects become LinkedHashMaps, arrays ArrayLists,
+ * numbers Long or Double, and true/false/null their Java equivalents.
+ */
+public class JsonParser {
+    
+    private final String text;
+    private int pos;
+    
+    private JsonParser(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the text is not valid JSON
+     */
+    public static Object parse(String text) {
+        JsonParser parser = new JsonParser(text);
+        Object value = parser.readValue();
+        parser.skipWhitespace();
+        if (parser.pos < text.length()) {
+            throw parser.error("Unexpected text after JSON value");
+        }
+        return value;
+    }
+    
+    private Object readValue() {
+        skipWhitespace();
+        if (pos >= text.length()) {
+            throw error("Unexpected end of JSON");
+        }
+        
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            case 'n':
+                return readLiteral("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber();
+                }
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+    
+    private Map<String, Object> readObject() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        pos++; // {
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return object;
+        }
+        
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected a property name");
+            }
+            String key = readString();
+            skipWhitespace();
+            expect(':');
+            object.put(key, readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect('}');
+                return object;
+            }
+        }
+    }
+    
+    private List<Object> readArray() {
+        List<Object> array = new ArrayList<>();
+        pos++; // [
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return array;
+        }
+        
+        while (true) {
+            array.add(readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect(']');
+                return array;
+            }
+        }
+    }
+    
+    private String readString() {
+        StringBuilder sb = new StringBuilder();
+        pos++; // opening quote
+        while (pos < text.length()) {
+            char c = text.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= text.length()) break;
+            
+            char escaped = text.charAt(pos++);
+            switch (escaped) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos + 4 > text.length()) throw error("Bad unicode escape");
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Bad unicode escape");
+                    }
+                    pos += 4;
+                    break;
+                default: sb.append(escaped); // \" \\ \/
+            }
+        }
+        throw error("Unterminated string");
+    }
+    
+    private Object readNumber() {
+        int start = pos;
+        if (peek() == '-') pos++;
+        boolean integral = true;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                pos++;
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                integral = false;
+                pos++;
+            } else {
+                break;
+            }
+        }
+        
+        String number = text.substring(start, pos);
+        try {
+            return integral ? (Object) Long.valueOf(number) : (Object) Double.valueOf(number);
+        } catch (NumberFormatException e) {
+            throw error("Bad number " + number);
+        }
+    }
+    
+    private Object readLiteral(String literal, Object value) {
+        if (!text.startsWith(literal, pos)) {
+            throw error("Unexpected token");
+        }
+        pos += literal.length();
+        return value;
+    }
+    
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+    
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : 0;
+    }
+    
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+    
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + pos);
+    }
+}
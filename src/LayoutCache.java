@@ -0,0 +1,214 @@
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.SwingUtilities;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ * Estimates the page count of the element list and the pages each element
+ * falls on, for a live readout while the list is edited.
+ *
+ * Each element is measured once, on a background thread, by laying it out
+ * alone into a throwaway document: its height is the full pages it fills
+ * plus what it uses of its last page. Measurements are cached per element;
+ * one that fails counts as no height and is tried again on the next update.
+ * Positions are then a running sum of heights over A4 pages, kept per list
+ * index, so after a move, removal or add only the entries from the first
+ * changed index onward are recomputed - a few arithmetic steps per element.
+ *
+ * Element boundaries don't fall exactly where they would in the real PDF
+ * (spacing collapses at a page top, unbreakable rows move to the next page),
+ * so spans are estimates. Call everything except the constructor on the EDT.
+ */
+public class LayoutCache {
+    
+    /**
+     * Usable height of a page, with the same page size and margins as the
+     * generated PDF. A holder so iText isn't loaded until there is something to measure.
+     */
+    private static class Page {
+        static final float HEIGHT;
+        static {
+            Document document = new Document(PageSize.A4);
+            HEIGHT = document.top() - document.bottom();
+        }
+    }
+    
+    private static final ExecutorService measurer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "layout-measurer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    
+    /**
+     * Where an element starts and ends, in points from the top of page 1
+     */
+    private static class Span {
+        final float start;
+        final float end;
+        
+        Span(float start, float end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+    
+    private final Runnable onChange;
+    
+    // Measured heights; elements that are gone from the list can be collected
+    private final Map<PDFElement, Float> heights = new WeakHashMap<>();
+    private final Map<PDFElement, Boolean> measuring = new WeakHashMap<>();
+    private final Map<PDFElement, Boolean> failed = new WeakHashMap<>();
+    
+    private List<PDFElement> elements = Collections.emptyList();
+    
+    // Spans of elements.get(0..spans.size()-1); stops at the first element not yet measured
+    private final List<Span> spans = new ArrayList<>();
+    
+    /**
+     * @param onChange run on the EDT whenever new measurements change the layout
+     */
+    public LayoutCache(Runnable onChange) {
+        this.onChange = onChange;
+    }
+    
+    /**
+     * Takes the current element list after a change at {@code firstChanged};
+     * positions before that index are kept
+     */
+    public void update(List<PDFElement> newElements, int firstChanged) {
+        elements = new ArrayList<>(newElements);
+        truncate(firstChanged);
+        
+        for (PDFElement element : elements) {
+            // A failed element is laid out as empty until a retry succeeds
+            if (!heights.containsKey(element) && !measuring.containsKey(element)) {
+                measuring.put(element, Boolean.TRUE);
+                measurer.execute(() -> {
+                    float height = measure(element);
+                    SwingUtilities.invokeLater(() -> measured(element, height));
+                });
+            }
+        }
+        layOut();
+    }
+    
+    /**
+     * Estimated total pages, counting only the elements measured so far
+     */
+    public int getPageCount() {
+        if (spans.isEmpty()) return 0;
+        return pageOf(spans.get(spans.size() - 1).end, true);
+    }
+    
+    /**
+     * Whether every element has been measured, so the counts are final
+     */
+    public boolean isComplete() {
+        return spans.size() == elements.size();
+    }
+    
+    /**
+     * Page range of an element, such as "p. 3" or "pp. 3-5", or null if not yet known
+     */
+    public String describeSpan(int index) {
+        if (index >= spans.size()) return null;
+        Span span = spans.get(index);
+        int first = pageOf(span.start, false);
+        int last = Math.max(first, pageOf(span.end, true));
+        return first == last ? "p. " + first : "pp. " + first + "-" + last;
+    }
+    
+    private void measured(PDFElement element, float height) {
+        measuring.remove(element);
+        if (height < 0) {
+            failed.put(element, Boolean.TRUE);
+        } else {
+            failed.remove(element);
+            heights.put(element, height);
+        }
+        
+        int index = indexOf(element);
+        if (index >= 0) {
+            truncate(index);
+            layOut();
+            onChange.run();
+        }
+    }
+    
+    private void truncate(int index) {
+        while (spans.size() > Math.max(0, index)) {
+            spans.remove(spans.size() - 1);
+        }
+    }
+    
+    /**
+     * Extends the spans from where they stop, as far as measurements allow
+     */
+    private void layOut() {
+        float position = spans.isEmpty() ? 0 : spans.get(spans.size() - 1).end;
+        for (int i = spans.size(); i < elements.size(); i++) {
+            PDFElement element = elements.get(i);
+            Float height = failed.containsKey(element) ? Float.valueOf(0) : heights.get(element);
+            if (height == null) break;
+            spans.add(new Span(position, position + height));
+            position += height;
+        }
+    }
+    
+    private int indexOf(PDFElement element) {
+        for (int i = 0; i < elements.size(); i++) {
+            if (elements.get(i) == element) return i;
+        }
+        return -1;
+    }
+    
+    /**
+     * 1-based page holding a position; an end position exactly on a page
+     * boundary belongs to the page before it
+     */
+    private static int pageOf(float position, boolean end) {
+        int page = (int) (position / Page.HEIGHT);
+        if (end && page > 0 && position == page * Page.HEIGHT) page--;
+        return page + 1;
+    }
+    
+    /**
+     * Lays an element out alone and returns its height in points, or -1 if it can't be rendered
+     */
+    private static float measure(PDFElement element) {
+        Document document = new Document(PageSize.A4);
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, new OutputStream() {
+                public void write(int b) {
+                }
+                public void write(byte[] b, int off, int len) {
+                }
+            });
+            document.open();
+            element.addToDocument(document);
+            
+            float usedOnLastPage = document.top() - writer.getVerticalPosition(false);
+            return (writer.getPageNumber() - 1) * Page.HEIGHT + usedOnLastPage;
+        } catch (Exception e) {
+            // Reported when the PDF is generated; may be a file not there yet, so not cached
+            return -1;
+        } finally {
+            try {
+                document.close();
+            } catch (RuntimeException e) {
+                // Nothing was added; there are no pages to close
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test for file conversion: converts every file in a directory (such as
+ * one written by CorpusGenerator) through convertFileToPDF, the same path as
+ * the Convert File tab, from several threads at once, and reports throughput
+ * and latency percentiles overall and per format.
+ *
+ * Usage:
+ *   java LoadRunner corpusDir [options]
+ *
+ *   --threads N    concurrent conversions (default: available processors)
+ *   --passes N     measured passes over the corpus (default 3)
+ *   --warmup N     unmeasured passes first, for the JIT (default 1)
+ *   --cache        keep the parsed-model cache on; by default every conversion parses its file
+ *
+ * Each conversion's latency is from when a thread starts it to when its PDF
+ * is closed. PDFs go to a temporary directory that is deleted afterwards.
+ * Exits with status 1 if any conversion failed.
+ */
+public class LoadRunner {
+    
+    private static final String[] FORMATS = { ".docx", ".xlsx", ".xls", ".pptx", ".txt" };
+    
+    /**
+     * One finished conversion
+     */
+    private static class Sample {
+        final String format;
+        final long nanos;
+        final long inputBytes;
+        final long outputBytes;
+        
+        Sample(String format, long nanos, long inputBytes, long outputBytes) {
+            this.format = format;
+            this.nanos = nanos;
+            this.inputBytes = inputBytes;
+            this.outputBytes = outputBytes;
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        
+        if (args.length == 0 || args[0].startsWith("--")) {
+            System.err.println("Usage: java LoadRunner corpusDir [--threads N] [--passes N] [--warmup N] [--cache]");
+            System.exit(2);
+        }
+        
+        int threads = Runtime.getRuntime().availableProcessors();
+        int passes = 3;
+        int warmup = 1;
+        boolean cache = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--passes": passes = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--cache": cache = true; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        
+        List<File> corpus = corpusFiles(new File(args[0]));
+        if (corpus.isEmpty()) {
+            System.err.println("No .docx, .xlsx, .xls, .pptx or .txt files in " + args[0]);
+            System.exit(2);
+        }
+        DocumentModelCache.setEnabled(cache);
+        
+        System.out.printf("%d files, %d threads, %d warm-up and %d measured passes, cache %s%n",
+            corpus.size(), threads, warmup, passes, cache ? "on" : "off");
+        
+        File outputDir = Files.createTempDirectory("load-runner").toFile();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        int failures;
+        try {
+            if (warmup > 0) {
+                run(pool, corpus, warmup, outputDir);
+            }
+            long start = System.nanoTime();
+            List<Sample> samples = run(pool, corpus, passes, outputDir);
+            long wallNanos = System.nanoTime() - start;
+            
+            failures = corpus.size() * passes - samples.size();
+            report(samples, wallNanos, failures);
+        } finally {
+            pool.shutdownNow();
+            for (File file : outputDir.listFiles()) {
+                file.delete();
+            }
+            outputDir.delete();
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+    
+    private static List<File> corpusFiles(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Not a directory: " + dir);
+        }
+        List<File> corpus = new ArrayList<>();
+        for (File file : files) {
+            if (file.isFile() && formatOf(file) != null) {
+                corpus.add(file);
+            }
+        }
+        Collections.sort(corpus);
+        return corpus;
+    }
+    
+    private static String formatOf(File file) {
+        String name = file.getName().toLowerCase();
+        for (String format : FORMATS) {
+            if (name.endsWith(format)) return format.substring(1);
+        }
+        return null;
+    }
+    
+    /**
+     * Converts the corpus the given number of times, in a fixed shuffled
+     * order so formats are interleaved, and returns the successful conversions
+     */
+    private static List<Sample> run(ExecutorService pool, List<File> corpus, int passes, File outputDir)
+            throws InterruptedException {
+        List<File> queue = new ArrayList<>();
+        for (int pass = 0; pass < passes; pass++) {
+            queue.addAll(corpus);
+        }
+        Collections.shuffle(queue, new Random(passes));
+        
+        AtomicInteger sequence = new AtomicInteger();
+        List<Future<Sample>> futures = new ArrayList<>(queue.size());
+        for (File input : queue) {
+            futures.add(pool.submit(() -> {
+                // Each conversion has its own output, so concurrent ones don't share a file
+                File output = new File(outputDir, sequence.incrementAndGet() + ".pdf");
+                long start = System.nanoTime();
+                pdfwithfunc.convertFileToPDF(input.getPath(), output.getPath());
+                long nanos = System.nanoTime() - start;
+                Sample sample = new Sample(formatOf(input), nanos, input.length(), output.length());
+                output.delete();
+                return sample;
+            }));
+        }
+        
+        List<Sample> samples = new ArrayList<>(queue.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                samples.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                System.err.println("Failed " + queue.get(i) + ": " + e.getCause());
+            }
+        }
+        return samples;
+    }
+    
+    private static void report(List<Sample> samples, long wallNanos, int failures) {
+        double seconds = wallNanos / 1e9;
+        long inputBytes = 0;
+        long outputBytes = 0;
+        Map<String, List<Sample>> byFormat = new TreeMap<>();
+        for (Sample sample : samples) {
+            inputBytes += sample.inputBytes;
+            outputBytes += sample.outputBytes;
+            byFormat.computeIfAbsent(sample.format, format -> new ArrayList<>()).add(sample);
+        }
+        
+        System.out.println();
+        System.out.printf("%,d conversions in %.1f s, %d failed%n", samples.size(), seconds, failures);
+        System.out.printf("Throughput: %.2f documents/s, %.2f MB/s in, %.2f MB/s out%n",
+            samples.size() / seconds, inputBytes / 1e6 / seconds, outputBytes / 1e6 / seconds);
+        
+        System.out.println();
+        System.out.printf("%-8s %7s %10s %10s %10s %10s %10s%n", "format", "count", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, List<Sample>> format : byFormat.entrySet()) {
+            printLatencies(format.getKey(), format.getValue());
+        }
+        printLatencies("all", samples);
+    }
+    
+    private static void printLatencies(String label, List<Sample> samples) {
+        if (samples.isEmpty()) return;
+        long[] nanos = new long[samples.size()];
+        long total = 0;
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = samples.get(i).nanos;
+            total += nanos[i];
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-8s %7d %10.1f %10.1f %10.1f %10.1f %10.1f%n", label, nanos.length,
+            total / 1e6 / nanos.length, percentile(nanos, 50), percentile(nanos, 90), percentile(nanos, 99),
+            nanos[nanos.length - 1] / 1e6);
+    }
+    
+    /**
+     * Nearest-rank percentile of sorted latencies, in milliseconds
+     */
+    private static double percentile(long[] sorted, double percent) {
+        int rank = (int) Math.ceil(sorted.length * percent / 100);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+}
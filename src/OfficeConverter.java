@@ -0,0 +1,479 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFShape;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFTextShape;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFPicture;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+
+/**
+ * Reads .txt, .docx, .doc, .xlsx, .xls and .pptx files into DocumentModel
+ * blocks. Blocks are emitted as soon as each paragraph, table, sheet or
+ * slide has been read, so a renderer can lay them out while the rest of the
+ * file is still being parsed.
+ */
+public class OfficeConverter implements DocumentModel.Source {
+    
+    /**
+     * Estimated parsed size above which an .xlsx or .pptx is streamed rather
+     * than loaded whole, overridable with -Dpdfgen.conversion.streamingThresholdBytes
+     */
+    public static final long STREAMING_THRESHOLD_BYTES =
+        Long.getLong("pdfgen.conversion.streamingThresholdBytes", 64L << 20);
+    
+    private final File file;
+    private final ConversionSelection selection;
+    private final ConversionBudget budget;
+    private final ProgressiveOutput progress;
+    
+    /**
+     * @param progress told how far through the file the converter is; may be null
+     */
+    public OfficeConverter(File file, ConversionSelection selection, ConversionBudget budget,
+                           ProgressiveOutput progress) {
+        this.file = file;
+        this.selection = selection;
+        this.budget = budget;
+        this.progress = progress;
+    }
+    
+    /**
+     * Loads POI and the XML schemas behind each format by building empty
+     * documents, so the first real conversion doesn't pay for it. Loading
+     * failures are ignored; the conversion itself will report them.
+     */
+    public static void preload() {
+        try {
+            new XWPFDocument().close();
+            new HSSFWorkbook().close();
+            try (XSSFWorkbook xlsx = new XSSFWorkbook();
+                 XMLSlideShow pptx = new XMLSlideShow()) {
+                xlsx.createSheet().createRow(0).createCell(0);
+                pptx.createSlide();
+            }
+        } catch (Exception | LinkageError e) {
+            // Nothing to warm up
+        }
+    }
+    
+    @Override
+    @SuppressWarnings("try")
+    public void emit(DocumentModel.Sink sink) throws Exception {
+        String fileName = file.getName().toLowerCase();
+        OfficeFileProbe probe = OfficeFileProbe.probe(file);
+        
+        // Selected sheets and slides are read lazily from the package, without a full POI load;
+        // so are whole files that would be large to load, or wouldn't fit the budget at all
+        long parseBytes = probe.estimatedParseBytes();
+        boolean selected = !selection.isAll() && probe.canStream();
+        boolean large = probe.canStream() && (parseBytes > STREAMING_THRESHOLD_BYTES || !budget.canReserve(parseBytes));
+        boolean lazy = selected || large;
+        
+        // Refuse files whose parsed form could never fit before POI starts inflating them
+        if (lazy) {
+            budget.reserve(probe.estimatedStreamingBytes(), "Streaming " + file.getName());
+        } else {
+            budget.reserve(parseBytes, "Parsing " + file.getName());
+        }
+        
+        // Includes time the sink spends on each block; for a prepared element that is just collecting it
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+        String route = selected ? ".selected" : large ? ".streamed" : "";
+        try (PdfMetrics.Timer timer = PdfMetrics.time("parse." + extension + route)) {
+            if (fileName.endsWith(".txt")) {
+                convertTxt(sink);
+            } else if (fileName.endsWith(".docx")) {
+                convertDocx(sink);
+            } else if (fileName.endsWith(".doc")) {
+                convertDoc(sink);
+            } else if (fileName.endsWith(".xlsx")) {
+                if (lazy) {
+                    convertSelectedSheets(sink);
+                } else {
+                    convertXlsx(sink);
+                }
+            } else if (fileName.endsWith(".xls")) {
+                convertXls(sink);
+            } else if (fileName.endsWith(".pptx")) {
+                if (lazy) {
+                    convertSelectedSlides(sink);
+                } else {
+                    convertPptx(sink);
+                }
+            } else {
+                throw new Exception("Unsupported file type");
+            }
+        }
+    }
+    
+    /**
+     * Tells a progressive output how far through the input the converter is
+     */
+    private void reportWork(long done, long total) {
+        if (progress != null && total > 0) {
+            progress.setWorkDone((double) done / total);
+        }
+    }
+    
+    private static DocumentModel.Block title(String kind, File file) {
+        return DocumentModel.TextBlock.heading(1, kind + ": " + file.getName()).spacing(0f, 10f);
+    }
+    
+    /**
+     * Emits the text in pieces of about TextElement.CHUNK_CHARS, split where
+     * TextElement would split it, so each piece can be rendered while the
+     * rest is read and iText never lays out the whole file as one paragraph
+     */
+    private void convertTxt(DocumentModel.Sink sink) throws Exception {
+        StringBuilder content = new StringBuilder();
+        long fileLength = file.length();
+        long charsRead = 0;
+        char lastChar = '\n';
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            
+            while ((line = reader.readLine()) != null) {
+                budget.checkpoint();
+                if (content.length() >= TextElement.CHUNK_CHARS
+                        && TextElement.canEndPiece(content.length() - 1, lastChar)) {
+                    // The line break between pieces is implied by starting a new paragraph
+                    content.setLength(content.length() - 1);
+                    sink.block(DocumentModel.TextBlock.plain(DocumentModel.Style.MONOSPACE, 10, content.toString()));
+                    content.setLength(0);
+                }
+                content.append(line).append("\n");
+                lastChar = line.isEmpty() ? '\n' : line.charAt(line.length() - 1);
+                charsRead += line.length() + 1;
+                reportWork(charsRead, fileLength);
+            }
+        }
+        
+        sink.block(DocumentModel.TextBlock.plain(DocumentModel.Style.MONOSPACE, 10, content.toString())
+            .spacing(0f, 15f));
+    }
+    
+    private void convertDocx(DocumentModel.Sink sink) throws Exception {
+        try (FileInputStream fis = new FileInputStream(file);
+             XWPFDocument docx = new XWPFDocument(fis)) {
+            sink.block(title("Document", file));
+            
+            List<XWPFParagraph> paragraphs = docx.getParagraphs();
+            List<XWPFTable> tables = docx.getTables();
+            int parts = paragraphs.size() + tables.size();
+            int partsDone = 0;
+            
+            for (XWPFParagraph para : paragraphs) {
+                budget.checkpoint();
+                reportWork(partsDone++, parts);
+                String text = para.getText().trim();
+                if (!text.isEmpty()) {
+                    sink.block(new DocumentModel.TextBlock(DocumentModel.Style.BODY, 0, 11, runsOf(para, text))
+                        .spacing(0f, 8f));
+                }
+                
+                for (XWPFRun run : para.getRuns()) {
+                    for (XWPFPicture picture : run.getEmbeddedPictures()) {
+                        byte[] data = picture.getPictureData().getData();
+                        budget.reserve(data.length);
+                        sink.block(new DocumentModel.ImageBlock(data).spacing(10f, 15f));
+                    }
+                }
+            }
+            
+            // Extract tables
+            for (XWPFTable table : tables) {
+                reportWork(partsDone++, parts);
+                convertWordTable(sink, table);
+            }
+        }
+    }
+    
+    /**
+     * The paragraph's runs with their bold and italic flags, trimmed like the paragraph text
+     */
+    private static List<DocumentModel.Run> runsOf(XWPFParagraph para, String text) {
+        List<DocumentModel.Run> runs = new ArrayList<>();
+        StringBuilder joined = new StringBuilder();
+        for (XWPFRun run : para.getRuns()) {
+            String runText = run.text();
+            if (!runText.isEmpty()) {
+                runs.add(new DocumentModel.Run(runText, run.isBold(), run.isItalic()));
+                joined.append(runText);
+            }
+        }
+        
+        // Fields and content controls aren't runs; keep all the text rather than the formatting
+        if (!joined.toString().trim().equals(text)) {
+            return Collections.singletonList(new DocumentModel.Run(text, false, false));
+        }
+        
+        DocumentModel.Run first = runs.get(0);
+        runs.set(0, new DocumentModel.Run(first.text.replaceFirst("^\\s+", ""), first.bold, first.italic));
+        DocumentModel.Run last = runs.get(runs.size() - 1);
+        runs.set(runs.size() - 1, new DocumentModel.Run(last.text.replaceFirst("\\s+$", ""), last.bold, last.italic));
+        return runs;
+    }
+    
+    private void convertWordTable(DocumentModel.Sink sink, XWPFTable wordTable) throws Exception {
+        List<XWPFTableRow> rows = wordTable.getRows();
+        if (rows.isEmpty()) return;
+        
+        int numCols = rows.get(0).getTableCells().size();
+        List<String[]> cells = new ArrayList<>(rows.size());
+        long tableBytes = 0;
+        
+        for (XWPFTableRow row : rows) {
+            List<XWPFTableCell> rowCells = row.getTableCells();
+            long rowBytes = rowCells.size() * ConversionBudget.CELL_BYTES;
+            budget.reserve(rowBytes);
+            tableBytes += rowBytes;
+            
+            String[] values = new String[rowCells.size()];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = rowCells.get(j).getText();
+            }
+            cells.add(values);
+        }
+        
+        sink.block(new DocumentModel.TableBlock(numCols, cells, 9, 4f).spacing(10f, 10f));
+        budget.release(tableBytes);
+    }
+    
+    private void convertDoc(DocumentModel.Sink sink) throws Exception {
+        // Note: .doc support is limited - newer .docx format is recommended
+        sink.block(DocumentModel.TextBlock.plain(DocumentModel.Style.BODY, 11,
+            "Legacy .doc format has limited support. Please convert to .docx for better results.\n" +
+            "File: " + file.getName()).spacing(0f, 15f));
+    }
+    
+    private static DocumentModel.Block sheetHeading(String name) {
+        return DocumentModel.TextBlock.heading(2, "Sheet: " + name).spacing(10f, 8f);
+    }
+    
+    private void convertXlsx(DocumentModel.Sink sink) throws Exception {
+        try (FileInputStream fis = new FileInputStream(file);
+             XSSFWorkbook workbook = new XSSFWorkbook(fis)) {
+            sink.block(title("Spreadsheet", file));
+            // Cells as Excel displays them, the same as the streaming reader
+            DataFormatter formatter = new DataFormatter();
+            
+            // Process each sheet
+            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+                reportWork(i, workbook.getNumberOfSheets());
+                Sheet sheet = workbook.getSheetAt(i);
+                sink.block(sheetHeading(sheet.getSheetName()));
+                
+                // Find max columns
+                int maxCols = 0;
+                for (Row row : sheet) {
+                    budget.checkpoint();
+                    if (row.getLastCellNum() > maxCols) {
+                        maxCols = row.getLastCellNum();
+                    }
+                }
+                
+                if (maxCols == 0) continue;
+                
+                // Add rows
+                List<String[]> rows = new ArrayList<>();
+                long tableBytes = 0;
+                for (Row row : sheet) {
+                    if (rows.size() > 100) break; // Limit rows to prevent huge PDFs
+                    
+                    // A 16k-column sheet is rejected here rather than after building every cell
+                    budget.reserve(maxCols * ConversionBudget.CELL_BYTES);
+                    tableBytes += maxCols * ConversionBudget.CELL_BYTES;
+                    
+                    String[] values = new String[maxCols];
+                    for (int j = 0; j < maxCols; j++) {
+                        // Formulas as written, as the streaming reader shows them
+                        values[j] = formatter.formatCellValue(row.getCell(j));
+                    }
+                    rows.add(values);
+                }
+                
+                sink.block(new DocumentModel.TableBlock(maxCols, rows, 8, 3f).spacing(0f, 10f));
+                budget.release(tableBytes);
+            }
+        }
+    }
+    
+    /**
+     * Converts only the selected sheets and rows of an .xlsx, streaming them
+     * with the SAX reader so unselected sheets are never parsed. Also used for
+     * whole workbooks too large to load; cells then read as Excel formats them.
+     */
+    private void convertSelectedSheets(DocumentModel.Sink sink) throws Exception {
+        sink.block(title("Spreadsheet", file));
+        
+        StreamingSheetReader.read(file, new StreamingSheetReader.SheetVisitor() {
+            List<String[]> rows;
+            int maxCols;
+            long tableBytes;
+            
+            public boolean startSheet(int number, String name) throws Exception {
+                if (!selection.includesSheet(number, name)) return false;
+                budget.checkpoint();
+                sink.block(sheetHeading(name));
+                
+                rows = new ArrayList<>();
+                maxCols = 0;
+                tableBytes = 0;
+                return true;
+            }
+            
+            public boolean row(int number, String[] cells) throws Exception {
+                budget.checkpoint();
+                if (selection.isPastLastRow(number)) return false;
+                if (!selection.includesRow(number)) return true;
+                if (rows.size() > 100) return false; // Same row limit as the full conversion
+                
+                budget.reserve(cells.length * ConversionBudget.CELL_BYTES);
+                tableBytes += cells.length * ConversionBudget.CELL_BYTES;
+                rows.add(cells);
+                maxCols = Math.max(maxCols, cells.length);
+                return true;
+            }
+            
+            public void endSheet() throws Exception {
+                if (maxCols == 0) return;
+                
+                sink.block(new DocumentModel.TableBlock(maxCols, rows, 8, 3f).spacing(0f, 10f));
+                budget.release(tableBytes);
+            }
+        });
+    }
+    
+    private void convertXls(DocumentModel.Sink sink) throws Exception {
+        try (FileInputStream fis = new FileInputStream(file);
+             HSSFWorkbook workbook = new HSSFWorkbook(fis)) {
+            sink.block(title("Spreadsheet", file));
+            DataFormatter formatter = new DataFormatter();
+            
+            // Process each sheet (similar to xlsx)
+            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+                reportWork(i, workbook.getNumberOfSheets());
+                Sheet sheet = workbook.getSheetAt(i);
+                if (!selection.includesSheet(i + 1, sheet.getSheetName())) continue;
+                
+                sink.block(sheetHeading(sheet.getSheetName()));
+                
+                int maxCols = 0;
+                for (Row row : sheet) {
+                    budget.checkpoint();
+                    if (selection.isPastLastRow(row.getRowNum() + 1)) break;
+                    if (!selection.includesRow(row.getRowNum() + 1)) continue;
+                    if (row.getLastCellNum() > maxCols) {
+                        maxCols = row.getLastCellNum();
+                    }
+                }
+                
+                if (maxCols == 0) continue;
+                
+                List<String[]> rows = new ArrayList<>();
+                long tableBytes = 0;
+                for (Row row : sheet) {
+                    if (rows.size() > 100) break;
+                    if (selection.isPastLastRow(row.getRowNum() + 1)) break;
+                    if (!selection.includesRow(row.getRowNum() + 1)) continue;
+                    
+                    budget.reserve(maxCols * ConversionBudget.CELL_BYTES);
+                    tableBytes += maxCols * ConversionBudget.CELL_BYTES;
+                    
+                    String[] values = new String[maxCols];
+                    for (int j = 0; j < maxCols; j++) {
+                        values[j] = formatter.formatCellValue(row.getCell(j));
+                    }
+                    rows.add(values);
+                }
+                
+                sink.block(new DocumentModel.TableBlock(maxCols, rows, 8, 3f).spacing(0f, 10f));
+                budget.release(tableBytes);
+            }
+        }
+    }
+    
+    private static DocumentModel.Block slideHeading(int number) {
+        return DocumentModel.TextBlock.heading(2, "Slide " + number).spacing(15f, 8f);
+    }
+    
+    private static DocumentModel.Block slideText(String text) {
+        return DocumentModel.TextBlock.plain(DocumentModel.Style.BODY, 10, text.trim()).spacing(0f, 5f);
+    }
+    
+    private void convertPptx(DocumentModel.Sink sink) throws Exception {
+        try (FileInputStream fis = new FileInputStream(file);
+             XMLSlideShow ppt = new XMLSlideShow(fis)) {
+            sink.block(title("Presentation", file));
+            
+            // Process each slide
+            List<XSLFSlide> slides = ppt.getSlides();
+            int slideNum = 1;
+            for (XSLFSlide slide : slides) {
+                budget.checkpoint();
+                reportWork(slideNum - 1, slides.size());
+                sink.block(slideHeading(slideNum));
+                
+                // Extract text from shapes
+                for (XSLFShape shape : slide.getShapes()) {
+                    if (shape instanceof XSLFTextShape) {
+                        String text = ((XSLFTextShape) shape).getText();
+                        if (text != null && !text.trim().isEmpty()) {
+                            sink.block(slideText(text));
+                        }
+                    }
+                }
+                
+                slideNum++;
+            }
+        }
+    }
+    
+    /**
+     * Converts only the selected slides of a .pptx. Slides are read one at a
+     * time from the package, and reading stops after the last selected slide.
+     * Also used for whole decks too large to load.
+     */
+    private void convertSelectedSlides(DocumentModel.Sink sink) throws Exception {
+        sink.block(title("Presentation", file));
+        
+        StreamingSlideReader.read(file, new StreamingSlideReader.SlideVisitor() {
+            public boolean wantSlide(int number) {
+                return selection.includesSlide(number);
+            }
+            
+            public boolean isDone(int number) {
+                return selection.isPastLastSlide(number);
+            }
+            
+            public void slide(int number, List<String> shapeTexts) throws Exception {
+                budget.checkpoint();
+                
+                // Keep the slide's number from the original deck
+                sink.block(slideHeading(number));
+                for (String text : shapeTexts) {
+                    if (!text.trim().isEmpty()) {
+                        sink.block(slideText(text));
+                    }
+                }
+            }
+        });
+    }
+}
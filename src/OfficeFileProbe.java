@@ -0,0 +1,228 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Cheap inspection of a file before it is converted.
+ * Only the zip directory and the first bytes of each worksheet part are read,
+ * so probing a 300 MB workbook costs milliseconds, not a full POI load.
+ *
+ * The estimates decide how a file is converted: .xlsx and .pptx files whose
+ * parsed form would be large are read with the streaming readers instead,
+ * and anything whose estimate still doesn't fit the budget is refused
+ * before POI starts.
+ */
+public class OfficeFileProbe {
+    
+    // Bytes read from the head of a worksheet part when looking for <dimension>
+    private static final int DIMENSION_SCAN_BYTES = 4096;
+    
+    // Rough size of one cell in worksheet XML, used when <dimension> is missing
+    private static final int BYTES_PER_CELL_XML = 40;
+    
+    // Heap used by a parsed POI document relative to its uncompressed size
+    private static final int DOM_EXPANSION = 4;
+    
+    private static final Pattern DIMENSION = Pattern.compile(
+        "<(?:\\w+:)?dimension\\s+ref=\"\\$?([A-Z]+)\\$?(\\d+)(?::\\$?([A-Z]+)\\$?(\\d+))?\"");
+    private static final Pattern SHEET_PART = Pattern.compile("xl/worksheets/sheet\\d+\\.xml");
+    private static final Pattern SLIDE_PART = Pattern.compile("ppt/slides/slide\\d+\\.xml");
+    private static final String SHARED_STRINGS_PART = "xl/sharedStrings.xml";
+    
+    private final String format;
+    private final long fileSize;
+    private long uncompressedSize;
+    private int sheetCount;
+    private long cellCount;
+    private int maxColumns;
+    private int slideCount;
+    private long sharedStringsSize;
+    private long largestPartSize;
+    
+    private OfficeFileProbe(String format, long fileSize) {
+        this.format = format;
+        this.fileSize = fileSize;
+        this.uncompressedSize = fileSize;
+    }
+    
+    /**
+     * Probes the given file. Zip based formats (.docx, .xlsx, .pptx) are
+     * inspected through their package directory; everything else is sized
+     * from the file length alone.
+     */
+    public static OfficeFileProbe probe(File file) throws IOException {
+        OfficeFileProbe probe = new OfficeFileProbe(formatOf(file.getName()), file.length());
+        
+        if (probe.format.equals("docx") || probe.format.equals("xlsx") || probe.format.equals("pptx")) {
+            probe.inspectPackage(file);
+        }
+        
+        return probe;
+    }
+    
+    /**
+     * Returns the lower-case extension used to route a file to its converter
+     */
+    public static String formatOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase();
+    }
+    
+    private void inspectPackage(File file) throws IOException {
+        long total = 0;
+        
+        try (ZipFile zip = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                long size = entry.getSize();
+                if (size > 0) {
+                    total += size;
+                }
+                
+                String name = entry.getName();
+                if (SHEET_PART.matcher(name).matches()) {
+                    sheetCount++;
+                    readSheetDimension(zip, entry);
+                } else if (SLIDE_PART.matcher(name).matches()) {
+                    slideCount++;
+                    largestPartSize = Math.max(largestPartSize, size);
+                } else if (name.equals(SHARED_STRINGS_PART)) {
+                    sharedStringsSize = Math.max(0, size);
+                }
+            }
+        }
+        
+        uncompressedSize = Math.max(total, fileSize);
+    }
+    
+    private void readSheetDimension(ZipFile zip, ZipEntry entry) throws IOException {
+        byte[] head = new byte[DIMENSION_SCAN_BYTES];
+        int read = 0;
+        
+        try (InputStream in = zip.getInputStream(entry)) {
+            int n;
+            while (read < head.length && (n = in.read(head, read, head.length - read)) > 0) {
+                read += n;
+            }
+        }
+        
+        Matcher m = DIMENSION.matcher(new String(head, 0, read, "UTF-8"));
+        if (m.find()) {
+            int firstCol = columnIndex(m.group(1));
+            int firstRow = Integer.parseInt(m.group(2));
+            int lastCol = m.group(3) == null ? firstCol : columnIndex(m.group(3));
+            int lastRow = m.group(4) == null ? firstRow : Integer.parseInt(m.group(4));
+            int cols = lastCol - firstCol + 1;
+            
+            cellCount += (long) cols * (lastRow - firstRow + 1);
+            maxColumns = Math.max(maxColumns, cols);
+        } else if (entry.getSize() > 0) {
+            cellCount += entry.getSize() / BYTES_PER_CELL_XML;
+        }
+    }
+    
+    private static int columnIndex(String letters) {
+        int index = 0;
+        for (int i = 0; i < letters.length(); i++) {
+            index = index * 26 + (letters.charAt(i) - 'A' + 1);
+        }
+        return index;
+    }
+    
+    /**
+     * Estimated amount of work for converting this file, in bytes of parsed input.
+     * Spreadsheets are costed by cell count because that is what POI materializes.
+     */
+    public long estimatedCost() {
+        switch (format) {
+            case "xlsx":
+                return Math.max(uncompressedSize, cellCount * 64);
+            case "xls":
+                return fileSize * 2;
+            case "docx":
+            case "pptx":
+                return uncompressedSize;
+            case "doc":
+                return 0; // Legacy .doc is not parsed, only noted
+            default:
+                return fileSize;
+        }
+    }
+    
+    /**
+     * Estimated heap needed just to hold the parsed file in POI's object model,
+     * before any PDF content is built. Parsed OOXML typically takes several
+     * times its uncompressed XML size.
+     */
+    public long estimatedParseBytes() {
+        switch (format) {
+            case "docx":
+            case "xlsx":
+            case "pptx":
+                return uncompressedSize * DOM_EXPANSION;
+            case "xls":
+                return fileSize * DOM_EXPANSION;
+            case "txt":
+                return fileSize * 2; // UTF-16 chars
+            default:
+                return 0;
+        }
+    }
+    
+    /**
+     * Whether a streaming reader exists for this format
+     */
+    public boolean canStream() {
+        return format.equals("xlsx") || format.equals("pptx");
+    }
+    
+    /**
+     * Estimated heap held while streaming the file: the streaming .xlsx
+     * reader keeps the shared strings in memory and one row at a time, the
+     * .pptx reader one slide at a time
+     */
+    public long estimatedStreamingBytes() {
+        switch (format) {
+            case "xlsx":
+                return sharedStringsSize * DOM_EXPANSION + (long) maxColumns * ConversionBudget.CELL_BYTES;
+            case "pptx":
+                return largestPartSize * DOM_EXPANSION;
+            default:
+                return estimatedParseBytes();
+        }
+    }
+    
+    public String getFormat() {
+        return format;
+    }
+    
+    public long getFileSize() {
+        return fileSize;
+    }
+    
+    public long getUncompressedSize() {
+        return uncompressedSize;
+    }
+    
+    public int getSheetCount() {
+        return sheetCount;
+    }
+    
+    public long getCellCount() {
+        return cellCount;
+    }
+    
+    public int getMaxColumns() {
+        return maxColumns;
+    }
+    
+    public int getSlideCount() {
+        return slideCount;
+    }
+}
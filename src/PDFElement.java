@@ -0,0 +1,58 @@
+import java.util.concurrent.Future;
+
+import com.itextpdf.text.Document;
+
+/**
+ * An element of a generated PDF, shared by the GUIs and the command-line renderer
+ */
+abstract class PDFElement {
+    private volatile Future<ElementPreparer.Placement> prepared;
+    
+    /**
+     * Does the slow part of building the element (fetching, decoding, parsing,
+     * building cells) and returns what assembly adds to the document.
+     * Runs on a background thread.
+     */
+    abstract ElementPreparer.Placement prepare() throws Exception;
+    
+    /**
+     * Starts preparing in the background unless already started
+     */
+    @SuppressWarnings("try")
+    void startPreparing() {
+        if (prepared == null) {
+            prepared = ElementPreparer.submit(() -> {
+                try (PdfMetrics.Timer timer = PdfMetrics.time("prepare." + getClass().getSimpleName())) {
+                    return prepare();
+                }
+            });
+        }
+    }
+    
+    /**
+     * Stops a preparation that is no longer needed
+     */
+    void discard() {
+        if (prepared != null) {
+            prepared.cancel(true);
+        }
+    }
+    
+    @SuppressWarnings("try")
+    void addToDocument(Document document) throws Exception {
+        startPreparing();
+        ElementPreparer.Placement placement;
+        try {
+            placement = ElementPreparer.await(prepared);
+        } catch (Exception e) {
+            // A failed preparation is retried on the next generation, e.g. once a URL is reachable
+            if (prepared.isDone()) {
+                prepared = null;
+            }
+            throw e;
+        }
+        try (PdfMetrics.Timer timer = PdfMetrics.time("layout." + getClass().getSimpleName())) {
+            placement.addTo(document);
+        }
+    }
+}
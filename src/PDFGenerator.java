@@ -24,10 +24,15 @@ public class PDFGenerator {
     /**
      * Generates a sample PDF with various elements
      */
+    @SuppressWarnings("try")
     public static void generateSamplePDF(String filename) throws DocumentException, IOException {
+        PdfMetrics.Timer generateTimer = PdfMetrics.time("generate.sample");
         Document document = new Document(PageSize.A4);
         PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(filename));
         
+        // Footer and page numbers on every page
+        new RunningHeaderFooter(null, "Generated by PDFGenerator © 2025", true).attach(writer);
+        
         document.open();
         
         // Add title
@@ -45,14 +50,19 @@ public class PDFGenerator {
         // Add styled text
         addStyledText(document);
         
-        document.close();
+        int pages = writer.getPageNumber();
+        try (PdfMetrics.Timer timer = PdfMetrics.time("write")) {
+            document.close();
+        }
+        generateTimer.close();
+        PdfMetrics.documentWritten(-1, pages, new java.io.File(filename).length());
     }
     
     /**
      * Adds a formatted title to the document
      */
     private static void addTitle(Document document) throws DocumentException {
-        Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 24, BaseColor.DARK_GRAY);
+        Font titleFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 24, BaseColor.DARK_GRAY);
         Paragraph title = new Paragraph("PDF Generator Demo", titleFont);
         title.setAlignment(Element.ALIGN_CENTER);
         title.setSpacingAfter(20f);
@@ -63,7 +73,7 @@ public class PDFGenerator {
      * Adds a simple paragraph
      */
     private static void addParagraph(Document document) throws DocumentException {
-        Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
+        Font normalFont = PdfFonts.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
         Paragraph paragraph = new Paragraph(
             "This is a demonstration of PDF generation using iText library in Java. " +
             "You can create professional PDFs with various elements including text, tables, images, and more.",
@@ -79,7 +89,7 @@ public class PDFGenerator {
      */
     private static void addTable(Document document) throws DocumentException {
         // Add section header
-        Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.BLUE);
+        Font headerFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.BLUE);
         Paragraph tableHeader = new Paragraph("Sample Data Table", headerFont);
         tableHeader.setSpacingBefore(10f);
         tableHeader.setSpacingAfter(10f);
@@ -91,7 +101,7 @@ public class PDFGenerator {
         table.setSpacingAfter(15f);
         
         // Add headers
-        Font cellFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, BaseColor.WHITE);
+        Font cellFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 10, BaseColor.WHITE);
         PdfPCell headerCell;
         
         String[] headers = {"Name", "Age", "City"};
@@ -104,7 +114,7 @@ public class PDFGenerator {
         }
         
         // Add data rows
-        Font dataFont = FontFactory.getFont(FontFactory.HELVETICA, 10, BaseColor.BLACK);
+        Font dataFont = PdfFonts.getFont(FontFactory.HELVETICA, 10, BaseColor.BLACK);
         String[][] data = {
             {"John Doe", "28", "New York"},
             {"Jane Smith", "34", "Los Angeles"},
@@ -126,14 +136,14 @@ public class PDFGenerator {
      * Adds a bulleted list
      */
     private static void addList(Document document) throws DocumentException {
-        Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.BLUE);
+        Font headerFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.BLUE);
         Paragraph listHeader = new Paragraph("Key Features", headerFont);
         listHeader.setSpacingBefore(10f);
         listHeader.setSpacingAfter(10f);
         document.add(listHeader);
         
         List list = new List(List.UNORDERED);
-        Font listFont = FontFactory.getFont(FontFactory.HELVETICA, 11, BaseColor.BLACK);
+        Font listFont = PdfFonts.getFont(FontFactory.HELVETICA, 11, BaseColor.BLACK);
         
         list.add(new ListItem("Easy PDF generation", listFont));
         list.add(new ListItem("Support for tables and images", listFont));
@@ -152,22 +162,15 @@ public class PDFGenerator {
         Paragraph styled = new Paragraph();
         styled.setSpacingBefore(15f);
         
-        Font boldFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.BLACK);
-        Font italicFont = FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 12, BaseColor.BLACK);
-        Font underlineFont = FontFactory.getFont(FontFactory.HELVETICA, 12, Font.UNDERLINE, BaseColor.BLACK);
+        Font boldFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.BLACK);
+        Font italicFont = PdfFonts.getFont(FontFactory.HELVETICA_OBLIQUE, 12, BaseColor.BLACK);
+        Font underlineFont = PdfFonts.getFont(FontFactory.HELVETICA, 12, Font.UNDERLINE, BaseColor.BLACK);
         
         styled.add(new Chunk("Bold text ", boldFont));
         styled.add(new Chunk("Italic text ", italicFont));
         styled.add(new Chunk("Underlined text", underlineFont));
         
         document.add(styled);
-        
-        // Add footer
-        Font footerFont = FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 10, BaseColor.GRAY);
-        Paragraph footer = new Paragraph("\nGenerated by PDFGenerator © 2025", footerFont);
-        footer.setAlignment(Element.ALIGN_CENTER);
-        footer.setSpacingBefore(30f);
-        document.add(footer);
     }
     
     /**
@@ -184,21 +187,23 @@ public class PDFGenerator {
      * Generates a PDF with image demonstration
      * This method creates a simple colored image programmatically
      */
+    @SuppressWarnings("try")
     public static void generatePDFWithImage(String filename) throws DocumentException, IOException {
+        PdfMetrics.Timer generateTimer = PdfMetrics.time("generate.image");
         Document document = new Document(PageSize.A4);
         PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(filename));
         
         document.open();
         
         // Add title
-        Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 24, BaseColor.DARK_GRAY);
+        Font titleFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 24, BaseColor.DARK_GRAY);
         Paragraph title = new Paragraph("PDF with Image Demo", titleFont);
         title.setAlignment(Element.ALIGN_CENTER);
         title.setSpacingAfter(20f);
         document.add(title);
         
         // Add description
-        Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
+        Font normalFont = PdfFonts.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
         Paragraph description = new Paragraph(
             "This PDF demonstrates how to add images. Below is a programmatically generated image:",
             normalFont
@@ -243,7 +248,7 @@ public class PDFGenerator {
         // Alternative: Load image from URL (Internet connection required)
         try {
             Paragraph urlImageTitle = new Paragraph("Image from URL:", 
-                FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12));
+                PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 12));
             urlImageTitle.setSpacingBefore(20f);
             urlImageTitle.setSpacingAfter(10f);
             document.add(urlImageTitle);
@@ -263,19 +268,24 @@ public class PDFGenerator {
         } catch (Exception e) {
             Paragraph errorNote = new Paragraph(
                 "Could not load image from URL (Internet connection may be required).",
-                FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 10, BaseColor.RED)
+                PdfFonts.getFont(FontFactory.HELVETICA_OBLIQUE, 10, BaseColor.RED)
             );
             document.add(errorNote);
         }
         
         // Add footer
-        Font footerFont = FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 10, BaseColor.GRAY);
+        Font footerFont = PdfFonts.getFont(FontFactory.HELVETICA_OBLIQUE, 10, BaseColor.GRAY);
         Paragraph footer = new Paragraph("\nTo add your own images, use:\nImage.getInstance(\"path/to/your/image.jpg\")", footerFont);
         footer.setAlignment(Element.ALIGN_CENTER);
         footer.setSpacingBefore(30f);
         document.add(footer);
         
-        document.close();
+        int pages = writer.getPageNumber();
+        try (PdfMetrics.Timer timer = PdfMetrics.time("write")) {
+            document.close();
+        }
+        generateTimer.close();
+        PdfMetrics.documentWritten(-1, pages, new java.io.File(filename).length());
     }
     
     /**
@@ -283,7 +293,8 @@ public class PDFGenerator {
      */
     public static void addLocalImage(Document document, String localImagePath) throws DocumentException, IOException {
         try {
-            Image image = Image.getInstance(localImagePath);
+            // Mapped, and passed through or resampled for the box below
+            Image image = ImageSource.open(localImagePath).toImage(500f, 400f);
             // Scale image to fit page width (with margins)
             image.scaleToFit(500f, 400f);
             image.setAlignment(Element.ALIGN_CENTER);
@@ -299,21 +310,23 @@ public class PDFGenerator {
     /**
      * Example method to generate a simple invoice PDF
      */
+    @SuppressWarnings("try")
     public static void generateInvoice(String filename, String customerName, 
                                       String[][] items, double total) throws DocumentException, IOException {
+        PdfMetrics.Timer generateTimer = PdfMetrics.time("generate.invoice");
         Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, new FileOutputStream(filename));
+        PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(filename));
         document.open();
         
         // Invoice header
-        Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 20, BaseColor.BLACK);
+        Font titleFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 20, BaseColor.BLACK);
         Paragraph title = new Paragraph("INVOICE", titleFont);
         title.setAlignment(Element.ALIGN_CENTER);
         title.setSpacingAfter(20f);
         document.add(title);
         
         // Customer info
-        Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
+        Font normalFont = PdfFonts.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
         document.add(new Paragraph("Customer: " + customerName, normalFont));
         document.add(new Paragraph("Date: " + new java.util.Date().toString(), normalFont));
         document.add(new Paragraph(" "));
@@ -327,16 +340,17 @@ public class PDFGenerator {
         String[] headers = {"Description", "Quantity", "Price", "Total"};
         for (String header : headers) {
             PdfPCell cell = new PdfPCell(new Phrase(header, 
-                FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10)));
+                PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 10)));
             cell.setBackgroundColor(BaseColor.LIGHT_GRAY);
             cell.setPadding(5f);
             table.addCell(cell);
         }
         
         // Items
+        Font itemFont = PdfFonts.getFont(FontFactory.HELVETICA, 12);
         for (String[] item : items) {
             for (String value : item) {
-                table.addCell(value);
+                table.addCell(new Phrase(value, itemFont));
             }
         }
         
@@ -344,10 +358,15 @@ public class PDFGenerator {
         
         // Total
         Paragraph totalPara = new Paragraph("\nTotal: $" + String.format("%.2f", total), 
-            FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14));
+            PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 14));
         totalPara.setAlignment(Element.ALIGN_RIGHT);
         document.add(totalPara);
         
-        document.close();
+        int pages = writer.getPageNumber();
+        try (PdfMetrics.Timer timer = PdfMetrics.time("write")) {
+            document.close();
+        }
+        generateTimer.close();
+        PdfMetrics.documentWritten(-1, pages, new java.io.File(filename).length());
     }
 }
@@ -0,0 +1,215 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ * Renders PDFs from JSON specs without starting Swing, using the same
+ * elements as the GUIs. Many specs can be rendered in one run, so the JVM
+ * start and class loading are paid once rather than per document.
+ *
+ * Usage:
+ *   java PDFGeneratorCLI spec.json [spec.json ...]
+ *   java PDFGeneratorCLI -          (spec paths read from standard input, one per line)
+ *
+ * A spec is one document object, or an array of them:
+ * <pre>
+ * {
+ *   "output": "report.pdf",
+ *   "elements": [
+ *     {"type": "text", "title": "Summary", "text": "..."},
+ *     {"type": "table", "headers": ["Item", "Qty"], "rows": [["Apples", 3]]},
+ *     {"type": "image", "path": "logo.png"},
+ *     {"type": "file", "path": "data.xlsx", "sheets": "Totals", "rows": "1-50"}
+ *   ]
+ * }
+ * </pre>
+ * Relative paths are resolved against the spec file's directory.
+ */
+public class PDFGeneratorCLI {
+    
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        
+        if (args.length == 0) {
+            System.err.println("Usage: java PDFGeneratorCLI spec.json [spec.json ...]");
+            System.err.println("       java PDFGeneratorCLI -   (spec paths on standard input)");
+            System.exit(2);
+        }
+        
+        int failures = 0;
+        for (String arg : args) {
+            if (arg.equals("-")) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        failures += renderSpec(new File(line.trim()));
+                    }
+                }
+            } else {
+                failures += renderSpec(new File(arg));
+            }
+        }
+        
+        System.exit(failures == 0 ? 0 : 1);
+    }
+    
+    /**
+     * Renders every document in a spec file and returns how many failed
+     */
+    private static int renderSpec(File specFile) {
+        List<Object> documents;
+        try {
+            Object spec = JsonParser.parse(new String(Files.readAllBytes(specFile.toPath()), StandardCharsets.UTF_8));
+            documents = spec instanceof List ? asList(spec, "spec") : Collections.singletonList(spec);
+        } catch (Exception e) {
+            System.err.println("Failed " + specFile + ": " + e.getMessage());
+            return 1;
+        }
+        
+        int failures = 0;
+        File baseDir = specFile.getAbsoluteFile().getParentFile();
+        for (Object document : documents) {
+            File output = null;
+            try {
+                Map<String, Object> doc = asMap(document, "document");
+                output = resolve(baseDir, requireString(doc, "output"));
+                long start = System.nanoTime();
+                int count = render(readElements(doc, baseDir), output);
+                System.out.printf("Wrote %s (%d elements, %d ms)%n", output, count, (System.nanoTime() - start) / 1_000_000);
+            } catch (Exception e) {
+                System.err.println("Failed " + (output != null ? output : specFile) + ": " + e.getMessage());
+                failures++;
+            }
+        }
+        return failures;
+    }
+    
+    private static List<PDFElement> readElements(Map<String, Object> doc, File baseDir) {
+        List<PDFElement> elements = new ArrayList<>();
+        for (Object item : asList(doc.get("elements"), "elements")) {
+            Map<String, Object> element = asMap(item, "element");
+            String type = requireString(element, "type");
+            switch (type) {
+                case "text":
+                    elements.add(new TextElement(optString(element, "title"), requireString(element, "text")));
+                    break;
+                case "table":
+                    elements.add(readTable(element));
+                    break;
+                case "image":
+                    String image = requireString(element, "path");
+                    boolean url = image.startsWith("http://") || image.startsWith("https://");
+                    elements.add(new ImageElement(url ? image : resolve(baseDir, image).getPath()));
+                    break;
+                case "file":
+                    ConversionSelection selection = new ConversionSelection(optString(element, "slides"),
+                        optString(element, "sheets"), optString(element, "rows"));
+                    elements.add(new ConvertedFileElement(resolve(baseDir, requireString(element, "path")).getPath(),
+                        selection, new ConversionBudget()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown element type: " + type);
+            }
+        }
+        return elements;
+    }
+    
+    private static TableElement readTable(Map<String, Object> element) {
+        List<Object> headerList = asList(element.get("headers"), "headers");
+        String[] headers = new String[headerList.size()];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = String.valueOf(headerList.get(i));
+        }
+        
+        ColumnarTable table = new ColumnarTable(headers);
+        if (element.containsKey("rows")) {
+            for (Object row : asList(element.get("rows"), "rows")) {
+                table.addRow(asList(row, "row").toArray());
+            }
+        }
+        return new TableElement(table);
+    }
+    
+    /**
+     * Prepares all elements concurrently, then places them in order
+     */
+    @SuppressWarnings("try")
+    private static int render(List<PDFElement> elements, File output) throws Exception {
+        for (PDFElement element : elements) {
+            element.startPreparing();
+        }
+        
+        boolean complete = false;
+        PdfMetrics.Timer generateTimer = PdfMetrics.time("generate.cli");
+        try (OutputStream out = new FileOutputStream(output)) {
+            Document document = new Document(PageSize.A4);
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            document.open();
+            for (PDFElement element : elements) {
+                element.addToDocument(document);
+            }
+            int pages = writer.getPageNumber();
+            try (PdfMetrics.Timer timer = PdfMetrics.time("write")) {
+                document.close();
+            }
+            generateTimer.close();
+            PdfMetrics.documentWritten(elements.size(), pages, output.length());
+            complete = true;
+        } finally {
+            if (!complete) {
+                for (PDFElement element : elements) {
+                    element.discard();
+                }
+                output.delete();
+            }
+        }
+        return elements.size();
+    }
+    
+    private static File resolve(File baseDir, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(baseDir, path);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value, String what) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Expected " + what + " to be an object");
+        }
+        return (Map<String, Object>) value;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Object> asList(Object value, String what) {
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Expected " + what + " to be an array");
+        }
+        return (List<Object>) value;
+    }
+    
+    private static String requireString(Map<String, Object> object, String key) {
+        Object value = object.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing \"" + key + "\"");
+        }
+        return String.valueOf(value);
+    }
+    
+    private static String optString(Map<String, Object> object, String key) {
+        Object value = object.get(key);
+        return value == null ? "" : String.valueOf(value);
+    }
+}
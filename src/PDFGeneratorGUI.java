@@ -10,22 +10,8 @@ import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.DefaultTableModel;
 
-// iText imports - using full path to avoid conflicts
-import com.itextpdf.text.BaseColor;
-import com.itextpdf.text.Document;
-import com.itextpdf.text.Element;
-import com.itextpdf.text.FontFactory;
-import com.itextpdf.text.Image;
-import com.itextpdf.text.PageSize;
-import com.itextpdf.text.Paragraph;
-import com.itextpdf.text.Phrase;
-import com.itextpdf.text.pdf.PdfPCell;
-import com.itextpdf.text.pdf.PdfPTable;
-import com.itextpdf.text.pdf.PdfWriter;
-
 // Other imports
 import java.io.File;
-import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -40,17 +26,36 @@ public class PDFGeneratorGUI extends JFrame {
     private JList<String> elementsList;
     private DefaultListModel<String> elementsListModel;
     private List<PDFElement> pdfElements;
+    private JTextField headerField;
+    private JCheckBox pageNumbersCheckBox;
+    
+    private static final String TITLE = "PDF Generator";
     
     // Element counter
     private int elementCounter = 0;
     
+    // Background generation in progress, if any
+    private PdfGenerationTask generationTask;
+    
+    // Elements that generation is writing; removing them from the list must not stop their preparation
+    private List<PDFElement> generatingElements = new ArrayList<>();
+    
+    // Last PDF generated, so regenerating after adding elements only appends them
+    private GeneratedOutput lastOutput;
+    
+    // Table import in progress, if any
+    private TableImportTask tableImportTask;
+    
+    // Project file the element list was opened from or last saved to
+    private ProjectFile currentProject;
+    
     public PDFGeneratorGUI() {
         pdfElements = new ArrayList<>();
         setupUI();
     }
     
     private void setupUI() {
-        setTitle("PDF Generator");
+        setTitle(TITLE);
         setSize(1000, 700);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLayout(new BorderLayout(10, 10));
@@ -147,11 +152,13 @@ public class PDFGeneratorGUI extends JFrame {
         JButton removeRowButton = new JButton("Remove Row");
         JButton addColumnButton = new JButton("Add Column");
         JButton removeColumnButton = new JButton("Remove Column");
+        JButton importButton = new JButton("Import...");
         
         controlPanel.add(addRowButton);
         controlPanel.add(removeRowButton);
         controlPanel.add(addColumnButton);
         controlPanel.add(removeColumnButton);
+        controlPanel.add(importButton);
         
         // Create table
         String[] columns = {"Column 1", "Column 2", "Column 3"};
@@ -169,6 +176,7 @@ public class PDFGeneratorGUI extends JFrame {
         
         // Button actions
         addRowButton.addActionListener(e -> tableModel.addRow(new Object[tableModel.getColumnCount()]));
+        importButton.addActionListener(e -> importTable());
         removeRowButton.addActionListener(e -> {
             int row = dataTable.getSelectedRow();
             if (row >= 0) tableModel.removeRow(row);
@@ -207,6 +215,33 @@ public class PDFGeneratorGUI extends JFrame {
         return panel;
     }
     
+    /**
+     * Loads a CSV, TSV or XLSX file into the table on a background task
+     */
+    private void importTable() {
+        if (tableImportTask != null) {
+            JOptionPane.showMessageDialog(this, "A table is already being imported!", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
+            public boolean accept(File f) {
+                return f.isDirectory() || TableImportTask.canImport(f);
+            }
+            public String getDescription() {
+                return "Table Files (*.csv, *.tsv, *.txt, *.xlsx)";
+            }
+        });
+        
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            TableImportTask task = new TableImportTask(this, fileChooser.getSelectedFile(), tableModel);
+            tableImportTask = task;
+            task.setOnFinished(() -> tableImportTask = null);
+            task.start();
+        }
+    }
+    
     private JPanel createImagePanel() {
         JPanel panel = new JPanel(new BorderLayout(10, 10));
         panel.setBorder(new EmptyBorder(10, 10, 10, 10));
@@ -272,7 +307,19 @@ public class PDFGeneratorGUI extends JFrame {
         controlPanel.add(removeButton);
         controlPanel.add(generateButton);
         
-        panel.add(controlPanel, BorderLayout.SOUTH);
+        // Running header and page numbers for every page of the generated PDF
+        JPanel pageOptionsPanel = new JPanel(new BorderLayout(5, 5));
+        headerField = new JTextField();
+        headerField.setFont(new Font("Arial", Font.PLAIN, 12));
+        pageNumbersCheckBox = new JCheckBox("Page numbers (Page X of Y)");
+        pageOptionsPanel.add(new JLabel("Header:"), BorderLayout.WEST);
+        pageOptionsPanel.add(headerField, BorderLayout.CENTER);
+        pageOptionsPanel.add(pageNumbersCheckBox, BorderLayout.SOUTH);
+        
+        JPanel southPanel = new JPanel(new BorderLayout(5, 5));
+        southPanel.add(pageOptionsPanel, BorderLayout.NORTH);
+        southPanel.add(controlPanel, BorderLayout.CENTER);
+        panel.add(southPanel, BorderLayout.SOUTH);
         
         return panel;
     }
@@ -282,12 +329,21 @@ public class PDFGeneratorGUI extends JFrame {
         
         JMenu fileMenu = new JMenu("File");
         JMenuItem newItem = new JMenuItem("New");
+        JMenuItem openItem = new JMenuItem("Open Project...");
+        JMenuItem saveItem = new JMenuItem("Save Project");
+        JMenuItem saveAsItem = new JMenuItem("Save Project As...");
         JMenuItem exitItem = new JMenuItem("Exit");
         
-        newItem.addActionListener(e -> clearAllElements());
+        newItem.addActionListener(e -> newDocument());
+        openItem.addActionListener(e -> openProject());
+        saveItem.addActionListener(e -> saveProject(false));
+        saveAsItem.addActionListener(e -> saveProject(true));
         exitItem.addActionListener(e -> System.exit(0));
         
         fileMenu.add(newItem);
+        fileMenu.add(openItem);
+        fileMenu.add(saveItem);
+        fileMenu.add(saveAsItem);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
         
@@ -331,6 +387,7 @@ public class PDFGeneratorGUI extends JFrame {
                 if (!text.isEmpty()) {
                     TextElement textElement = new TextElement(title, text);
                     pdfElements.add(textElement);
+                    textElement.startPreparing();
                     String display = title.isEmpty() ? 
                         String.format("%d. Text: %s...", elementCounter, text.substring(0, Math.min(30, text.length()))) :
                         String.format("%d. Title: %s", elementCounter, title);
@@ -347,6 +404,7 @@ public class PDFGeneratorGUI extends JFrame {
                 if (tableModel.getRowCount() > 0 && tableModel.getColumnCount() > 0) {
                     TableElement tableElement = new TableElement(tableModel);
                     pdfElements.add(tableElement);
+                    tableElement.startPreparing();
                     elementsListModel.addElement(String.format("%d. Table: %dx%d", 
                         elementCounter, tableModel.getRowCount(), tableModel.getColumnCount()));
                     JOptionPane.showMessageDialog(this, "Table element added!", "Success", JOptionPane.INFORMATION_MESSAGE);
@@ -360,6 +418,7 @@ public class PDFGeneratorGUI extends JFrame {
                 if (!imagePath.isEmpty()) {
                     ImageElement imageElement = new ImageElement(imagePath);
                     pdfElements.add(imageElement);
+                    imageElement.startPreparing();
                     String fileName = new File(imagePath).getName();
                     elementsListModel.addElement(String.format("%d. Image: %s", elementCounter, fileName));
                     imagePathField.setText("");
@@ -393,14 +452,119 @@ public class PDFGeneratorGUI extends JFrame {
     private void removeSelectedElement() {
         int index = elementsList.getSelectedIndex();
         if (index >= 0) {
-            pdfElements.remove(index);
+            discard(pdfElements.remove(index));
             elementsListModel.remove(index);
         } else {
             JOptionPane.showMessageDialog(this, "Please select an element to remove!", "Warning", JOptionPane.WARNING_MESSAGE);
         }
     }
     
+    private void newDocument() {
+        clearAllElements();
+        currentProject = null;
+        setTitle(TITLE);
+    }
+    
+    private void openProject() {
+        JFileChooser fileChooser = projectChooser();
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        
+        try {
+            // Only the index is read here; element contents load when the PDF is generated
+            ProjectFile project = ProjectFile.open(fileChooser.getSelectedFile());
+            clearAllElements();
+            pdfElements.addAll(project.getElements());
+            for (String label : project.getLabels()) {
+                elementsListModel.addElement(label);
+            }
+            elementCounter = pdfElements.size();
+            currentProject = project;
+            setTitle(TITLE + " - " + project.getFile().getName());
+            
+            List<String> changed = project.changedSources();
+            if (!changed.isEmpty()) {
+                JOptionPane.showMessageDialog(this, 
+                    "These files have changed since the project was saved; the PDF will show them as they are now:\n" 
+                    + String.join("\n", changed), 
+                    "Project Opened", JOptionPane.WARNING_MESSAGE);
+            }
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error opening project: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void saveProject(boolean askForFile) {
+        try {
+            if (currentProject != null && !askForFile) {
+                // Appends only what was added since the last save
+                currentProject.save(pdfElements, listLabels());
+                showSaveWarnings(currentProject);
+                return;
+            }
+            
+            JFileChooser fileChooser = projectChooser();
+            fileChooser.setSelectedFile(new File("document" + ProjectFile.EXTENSION));
+            if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            String filename = fileChooser.getSelectedFile().getAbsolutePath();
+            if (!filename.toLowerCase().endsWith(ProjectFile.EXTENSION)) {
+                filename += ProjectFile.EXTENSION;
+            }
+            
+            // Only becomes the open project once it has been written
+            ProjectFile project = ProjectFile.saveAs(new File(filename), pdfElements, listLabels());
+            currentProject = project;
+            setTitle(TITLE + " - " + project.getFile().getName());
+            showSaveWarnings(project);
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error saving project: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void showSaveWarnings(ProjectFile project) {
+        if (!project.getWarnings().isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Project saved, but:\n" + String.join("\n", project.getWarnings()), 
+                "Project Saved", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+    
+    private List<String> listLabels() {
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < elementsListModel.size(); i++) {
+            labels.add(elementsListModel.get(i));
+        }
+        return labels;
+    }
+    
+    private JFileChooser projectChooser() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
+            public boolean accept(File f) {
+                return f.isDirectory() || f.getName().toLowerCase().endsWith(ProjectFile.EXTENSION);
+            }
+            public String getDescription() {
+                return "PDF Generator Projects (*" + ProjectFile.EXTENSION + ")";
+            }
+        });
+        return fileChooser;
+    }
+    
+    /**
+     * Stops an element's preparation, unless the PDF being generated still needs it
+     */
+    private void discard(PDFElement element) {
+        if (!generatingElements.contains(element)) {
+            element.discard();
+        }
+    }
+    
     private void clearAllElements() {
+        for (PDFElement element : pdfElements) {
+            discard(element);
+        }
         pdfElements.clear();
         elementsListModel.clear();
         elementCounter = 0;
@@ -414,6 +578,10 @@ public class PDFGeneratorGUI extends JFrame {
             JOptionPane.showMessageDialog(this, "Please add some elements first!", "Warning", JOptionPane.WARNING_MESSAGE);
             return;
         }
+        if (generationTask != null) {
+            JOptionPane.showMessageDialog(this, "A PDF is already being generated!", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
         
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Save PDF");
@@ -426,32 +594,37 @@ public class PDFGeneratorGUI extends JFrame {
                 filename += ".pdf";
             }
             
-            try {
-                createPDFDocument(filename);
-                JOptionPane.showMessageDialog(this, 
-                    "PDF generated successfully!\n" + filename, 
-                    "Success", 
-                    JOptionPane.INFORMATION_MESSAGE);
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(this, 
-                    "Error generating PDF: " + e.getMessage(), 
-                    "Error", 
-                    JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
-            }
+            startGeneration(new File(filename));
         }
     }
     
-    private void createPDFDocument(String filename) throws Exception {
-        Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, new FileOutputStream(filename));
-        document.open();
-        
-        for (PDFElement element : pdfElements) {
-            element.addToDocument(document);
+    /**
+     * Generates the PDF on a background task; the window stays usable meanwhile
+     */
+    private void startGeneration(File output) {
+        PdfGenerationTask task = new PdfGenerationTask(this, output);
+        task.setHeaderFooter(headerField.getText(), pageNumbersCheckBox.isSelected());
+        // Numbered pages can't be appended to; their total would go stale
+        boolean appendable = !task.hasHeaderFooter();
+        int alreadyWritten = lastOutput != null && appendable ? lastOutput.elementsAlreadyIn(output, pdfElements) : 0;
+        for (int i = 0; i < pdfElements.size(); i++) {
+            // Anything not yet preparing starts now, alongside the rest
+            if (i >= alreadyWritten) {
+                pdfElements.get(i).startPreparing();
+            }
+            task.add(elementsListModel.get(i), pdfElements.get(i)::addToDocument);
         }
-        
-        document.close();
+        task.setAlreadyWritten(alreadyWritten);
+        
+        List<PDFElement> generated = new ArrayList<>(pdfElements);
+        generationTask = task;
+        generatingElements = generated;
+        task.setOnFinished(() -> {
+            generationTask = null;
+            generatingElements = new ArrayList<>();
+            lastOutput = task.isSucceeded() && appendable ? new GeneratedOutput(output, generated) : null;
+        });
+        task.start();
     }
     
     private void showAboutDialog() {
@@ -461,111 +634,6 @@ public class PDFGeneratorGUI extends JFrame {
             JOptionPane.INFORMATION_MESSAGE);
     }
     
-    // Inner classes for PDF elements
-    private abstract class PDFElement {
-        abstract void addToDocument(Document document) throws Exception;
-    }
-    
-    private class TextElement extends PDFElement {
-        String title;
-        String text;
-        
-        TextElement(String title, String text) {
-            this.title = title;
-            this.text = text;
-        }
-        
-        void addToDocument(Document document) throws Exception {
-            if (!title.isEmpty()) {
-                com.itextpdf.text.Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 16, BaseColor.DARK_GRAY);
-                Paragraph titlePara = new Paragraph(title, titleFont);
-                titlePara.setSpacingAfter(10f);
-                document.add(titlePara);
-            }
-            
-            com.itextpdf.text.Font textFont = FontFactory.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
-            Paragraph textPara = new Paragraph(text, textFont);
-            textPara.setAlignment(Element.ALIGN_JUSTIFIED);
-            textPara.setSpacingAfter(15f);
-            document.add(textPara);
-        }
-    }
-    
-    private class TableElement extends PDFElement {
-        Object[][] data;
-        String[] headers;
-        
-        TableElement(DefaultTableModel model) {
-            int rows = model.getRowCount();
-            int cols = model.getColumnCount();
-            
-            headers = new String[cols];
-            for (int i = 0; i < cols; i++) {
-                headers[i] = model.getColumnName(i);
-            }
-            
-            data = new Object[rows][cols];
-            for (int i = 0; i < rows; i++) {
-                for (int j = 0; j < cols; j++) {
-                    data[i][j] = model.getValueAt(i, j);
-                }
-            }
-        }
-        
-        void addToDocument(Document document) throws Exception {
-            PdfPTable table = new PdfPTable(headers.length);
-            table.setWidthPercentage(100);
-            table.setSpacingBefore(10f);
-            table.setSpacingAfter(15f);
-            
-            // Add headers
-            com.itextpdf.text.Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, BaseColor.WHITE);
-            for (String header : headers) {
-                PdfPCell cell = new PdfPCell(new Phrase(header, headerFont));
-                cell.setBackgroundColor(BaseColor.DARK_GRAY);
-                cell.setPadding(5f);
-                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-                table.addCell(cell);
-            }
-            
-            // Add data
-            com.itextpdf.text.Font dataFont = FontFactory.getFont(FontFactory.HELVETICA, 10, BaseColor.BLACK);
-            for (Object[] row : data) {
-                for (Object cell : row) {
-                    String cellText = cell == null ? "" : cell.toString();
-                    PdfPCell dataCell = new PdfPCell(new Phrase(cellText, dataFont));
-                    dataCell.setPadding(5f);
-                    table.addCell(dataCell);
-                }
-            }
-            
-            document.add(table);
-        }
-    }
-    
-    private class ImageElement extends PDFElement {
-        String path;
-        
-        ImageElement(String path) {
-            this.path = path;
-        }
-        
-        void addToDocument(Document document) throws Exception {
-            Image image;
-            if (path.startsWith("http://") || path.startsWith("https://")) {
-                image = Image.getInstance(new java.net.URL(path));
-            } else {
-                image = Image.getInstance(path);
-            }
-            
-            image.scaleToFit(500f, 400f);
-            image.setAlignment(Element.ALIGN_CENTER);
-            image.setSpacingBefore(10f);
-            image.setSpacingAfter(15f);
-            document.add(image);
-        }
-    }
-    
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> new PDFGeneratorGUI());
     }
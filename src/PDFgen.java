@@ -20,10 +20,15 @@ public class PDFgen {
     /**
      * Generates a sample PDF with various elements
      */
+    @SuppressWarnings("try")
     public static void generateSamplePDF(String filename) throws DocumentException, IOException {
+        PdfMetrics.Timer generateTimer = PdfMetrics.time("generate.sample");
         Document document = new Document(PageSize.A4);
         PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(filename));
         
+        // Footer and page numbers on every page
+        new RunningHeaderFooter(null, "Generated by PDFGenerator © 2025", true).attach(writer);
+        
         document.open();
         
         // Add title
@@ -41,14 +46,19 @@ public class PDFgen {
         // Add styled text
         addStyledText(document);
         
-        document.close();
+        int pages = writer.getPageNumber();
+        try (PdfMetrics.Timer timer = PdfMetrics.time("write")) {
+            document.close();
+        }
+        generateTimer.close();
+        PdfMetrics.documentWritten(-1, pages, new java.io.File(filename).length());
     }
     
     /**
      * Adds a formatted title to the document
      */
     private static void addTitle(Document document) throws DocumentException {
-        Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 24, BaseColor.DARK_GRAY);
+        Font titleFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 24, BaseColor.DARK_GRAY);
         Paragraph title = new Paragraph("PDF Generator Demo", titleFont);
         title.setAlignment(Element.ALIGN_CENTER);
         title.setSpacingAfter(20f);
@@ -59,7 +69,7 @@ public class PDFgen {
      * Adds a simple paragraph
      */
     private static void addParagraph(Document document) throws DocumentException {
-        Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
+        Font normalFont = PdfFonts.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
         Paragraph paragraph = new Paragraph(
             "This is a demonstration of PDF generation using iText library in Java. " +
             "You can create professional PDFs with various elements including text, tables, images, and more.",
@@ -75,7 +85,7 @@ public class PDFgen {
      */
     private static void addTable(Document document) throws DocumentException {
         // Add section header
-        Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.BLUE);
+        Font headerFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.BLUE);
         Paragraph tableHeader = new Paragraph("Sample Data Table", headerFont);
         tableHeader.setSpacingBefore(10f);
         tableHeader.setSpacingAfter(10f);
@@ -87,7 +97,7 @@ public class PDFgen {
         table.setSpacingAfter(15f);
         
         // Add headers
-        Font cellFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, BaseColor.WHITE);
+        Font cellFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 10, BaseColor.WHITE);
         PdfPCell headerCell;
         
         String[] headers = {"Name", "Age", "City"};
@@ -100,7 +110,7 @@ public class PDFgen {
         }
         
         // Add data rows
-        Font dataFont = FontFactory.getFont(FontFactory.HELVETICA, 10, BaseColor.BLACK);
+        Font dataFont = PdfFonts.getFont(FontFactory.HELVETICA, 10, BaseColor.BLACK);
         String[][] data = {
             {"John Doe", "28", "New York"},
             {"Jane Smith", "34", "Los Angeles"},
@@ -122,14 +132,14 @@ public class PDFgen {
      * Adds a bulleted list
      */
     private static void addList(Document document) throws DocumentException {
-        Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.BLUE);
+        Font headerFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.BLUE);
         Paragraph listHeader = new Paragraph("Key Features", headerFont);
         listHeader.setSpacingBefore(10f);
         listHeader.setSpacingAfter(10f);
         document.add(listHeader);
         
         List list = new List(List.UNORDERED);
-        Font listFont = FontFactory.getFont(FontFactory.HELVETICA, 11, BaseColor.BLACK);
+        Font listFont = PdfFonts.getFont(FontFactory.HELVETICA, 11, BaseColor.BLACK);
         
         list.add(new ListItem("Easy PDF generation", listFont));
         list.add(new ListItem("Support for tables and images", listFont));
@@ -148,22 +158,15 @@ public class PDFgen {
         Paragraph styled = new Paragraph();
         styled.setSpacingBefore(15f);
         
-        Font boldFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.BLACK);
-        Font italicFont = FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 12, BaseColor.BLACK);
-        Font underlineFont = FontFactory.getFont(FontFactory.HELVETICA, 12, Font.UNDERLINE, BaseColor.BLACK);
+        Font boldFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.BLACK);
+        Font italicFont = PdfFonts.getFont(FontFactory.HELVETICA_OBLIQUE, 12, BaseColor.BLACK);
+        Font underlineFont = PdfFonts.getFont(FontFactory.HELVETICA, 12, Font.UNDERLINE, BaseColor.BLACK);
         
         styled.add(new Chunk("Bold text ", boldFont));
         styled.add(new Chunk("Italic text ", italicFont));
         styled.add(new Chunk("Underlined text", underlineFont));
         
         document.add(styled);
-        
-        // Add footer
-        Font footerFont = FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 10, BaseColor.GRAY);
-        Paragraph footer = new Paragraph("\nGenerated by PDFGenerator © 2025", footerFont);
-        footer.setAlignment(Element.ALIGN_CENTER);
-        footer.setSpacingBefore(30f);
-        document.add(footer);
     }
     
     /**
@@ -179,21 +182,23 @@ public class PDFgen {
     /**
      * Example method to generate a simple invoice PDF
      */
+    @SuppressWarnings("try")
     public static void generateInvoice(String filename, String customerName, 
                                       String[][] items, double total) throws DocumentException, IOException {
+        PdfMetrics.Timer generateTimer = PdfMetrics.time("generate.invoice");
         Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, new FileOutputStream(filename));
+        PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(filename));
         document.open();
         
         // Invoice header
-        Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 20, BaseColor.BLACK);
+        Font titleFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 20, BaseColor.BLACK);
         Paragraph title = new Paragraph("INVOICE", titleFont);
         title.setAlignment(Element.ALIGN_CENTER);
         title.setSpacingAfter(20f);
         document.add(title);
         
         // Customer info
-        Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
+        Font normalFont = PdfFonts.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
         document.add(new Paragraph("Customer: " + customerName, normalFont));
         document.add(new Paragraph("Date: " + new java.util.Date().toString(), normalFont));
         document.add(new Paragraph(" "));
@@ -207,16 +212,17 @@ public class PDFgen {
         String[] headers = {"Description", "Quantity", "Price", "Total"};
         for (String header : headers) {
             PdfPCell cell = new PdfPCell(new Phrase(header, 
-                FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10)));
+                PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 10)));
             cell.setBackgroundColor(BaseColor.LIGHT_GRAY);
             cell.setPadding(5f);
             table.addCell(cell);
         }
         
         // Items
+        Font itemFont = PdfFonts.getFont(FontFactory.HELVETICA, 12);
         for (String[] item : items) {
             for (String value : item) {
-                table.addCell(value);
+                table.addCell(new Phrase(value, itemFont));
             }
         }
         
@@ -224,10 +230,15 @@ public class PDFgen {
         
         // Total
         Paragraph totalPara = new Paragraph("\nTotal: $" + String.format("%.2f", total), 
-            FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14));
+            PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 14));
         totalPara.setAlignment(Element.ALIGN_RIGHT);
         document.add(totalPara);
         
-        document.close();
+        int pages = writer.getPageNumber();
+        try (PdfMetrics.Timer timer = PdfMetrics.time("write")) {
+            document.close();
+        }
+        generateTimer.close();
+        PdfMetrics.documentWritten(-1, pages, new java.io.File(filename).length());
     }
 }
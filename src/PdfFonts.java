@@ -0,0 +1,189 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.FontFactory;
+import com.itextpdf.text.pdf.BaseFont;
+
+/**
+ * Fonts for PDF text, drop-in for FontFactory.getFont with the base-14 names.
+ *
+ * The base-14 fonts only cover Latin-1, so names in Cyrillic, Greek, CJK and
+ * so on came out as blanks. Instead, each base-14 family is mapped to an
+ * installed TrueType family with wide coverage (DejaVu, Noto or Arial /
+ * Times New Roman / Courier New, sans, serif or mono to match), embedded
+ * with Identity-H encoding. iText embeds only the glyphs a document uses,
+ * so each face a document uses adds about 20 KB (mostly DejaVu's glyph
+ * metrics) rather than the 700 KB file.
+ *
+ * Each font file is parsed once per JVM and the BaseFont shared by every
+ * document and thread; glyph subsets are tracked per document by the
+ * writer. Files are read into memory so concurrent documents don't share a
+ * file pointer.
+ *
+ * Families are found through FontIndex, built over the system font
+ * directories plus any in -Dpdfgen.fonts.dir (a path list, searched
+ * first). -Dpdfgen.font.sans, .serif and .mono name a family to try before
+ * the defaults below; -Dpdfgen.fonts=base14 turns embedding off. Without a
+ * usable font file the base-14 font is used, as before.
+ */
+public class PdfFonts {
+    
+    // Families to use for each base-14 family; the first one installed wins
+    private static final String[] SANS = { "DejaVu Sans", "Noto Sans", "Arial", "Liberation Sans", "Helvetica" };
+    private static final String[] SERIF = { "DejaVu Serif", "Noto Serif", "Times New Roman", "Liberation Serif", "Times" };
+    private static final String[] MONO = { "DejaVu Sans Mono", "Noto Sans Mono", "Courier New", "Liberation Mono", "Courier" };
+    
+    private static final String[] FONT_DIRS = {
+        "/usr/share/fonts", "/usr/local/share/fonts", "~/.fonts", "~/.local/share/fonts",
+        "C:/Windows/Fonts", "~/AppData/Local/Microsoft/Windows/Fonts",
+        "/Library/Fonts", "/System/Library/Fonts", "~/Library/Fonts",
+    };
+    
+    private static final boolean EMBED = !"base14".equalsIgnoreCase(System.getProperty("pdfgen.fonts"));
+    
+    // Font paths found per family, resolved on first use: [regular, bold, italic, bold italic]
+    private static final Map<String, String[]> families = new ConcurrentHashMap<>();
+    
+    // Parsed fonts by path, shared across documents
+    private static final Map<String, BaseFont> baseFonts = new ConcurrentHashMap<>();
+    
+    private static final String[] NONE = new String[4];
+    
+    public static Font getFont(String name, float size) {
+        return getFont(name, size, Font.NORMAL, BaseColor.BLACK);
+    }
+    
+    public static Font getFont(String name, float size, BaseColor color) {
+        return getFont(name, size, Font.NORMAL, color);
+    }
+    
+    /**
+     * The font for a base-14 name such as FontFactory.HELVETICA_BOLD; style
+     * may add bold, italic, underline or strikethrough
+     */
+    public static Font getFont(String name, float size, int style, BaseColor color) {
+        String lower = name.toLowerCase();
+        String[] files = EMBED ? familyOf(lower) : NONE;
+        if (files[0] == null) {
+            return FontFactory.getFont(name, size, style, color);
+        }
+        
+        boolean bold = lower.contains("bold") || (style & Font.BOLD) != 0;
+        boolean italic = lower.contains("oblique") || lower.contains("italic") || (style & Font.ITALIC) != 0;
+        int variant = (bold ? 1 : 0) + (italic ? 2 : 0);
+        
+        // A missing variant is drawn from the nearest file, with iText simulating the rest
+        String file = files[variant];
+        int simulated = 0;
+        if (file == null && italic && files[bold ? 1 : 0] != null) {
+            file = files[bold ? 1 : 0];
+            simulated = Font.ITALIC;
+        }
+        if (file == null) {
+            file = files[0];
+            simulated = (bold ? Font.BOLD : 0) | (italic ? Font.ITALIC : 0);
+        }
+        
+        BaseFont baseFont = baseFont(file);
+        if (baseFont == null) {
+            return FontFactory.getFont(name, size, style, color);
+        }
+        int decoration = style & (Font.UNDERLINE | Font.STRIKETHRU);
+        return new Font(baseFont, size, simulated | decoration, color);
+    }
+    
+    private static String[] familyOf(String lowerName) {
+        String family;
+        String[] candidates;
+        if (lowerName.startsWith("courier")) {
+            family = "mono";
+            candidates = MONO;
+        } else if (lowerName.startsWith("times")) {
+            family = "serif";
+            candidates = SERIF;
+        } else if (lowerName.startsWith("helvetica")) {
+            family = "sans";
+            candidates = SANS;
+        } else {
+            // Symbol and ZapfDingbats have their own glyphs
+            return NONE;
+        }
+        return families.computeIfAbsent(family, key -> find(System.getProperty("pdfgen.font." + key), candidates));
+    }
+    
+    private static String[] find(String configured, String[] candidates) {
+        FontIndex index = IndexHolder.INDEX;
+        if (configured != null) {
+            String[] paths = index.family(configured);
+            if (paths != null && paths[0] != null) return paths;
+            System.err.println("Font family " + configured + " is not installed, using the default");
+        }
+        for (String name : candidates) {
+            String[] paths = index.family(name);
+            if (paths != null && paths[0] != null) return paths;
+        }
+        return NONE;
+    }
+    
+    /**
+     * The font index, loaded when the first font is looked up
+     */
+    private static class IndexHolder {
+        static final FontIndex INDEX = loadIndex();
+        
+        @SuppressWarnings("try")
+        private static FontIndex loadIndex() {
+            String home = System.getProperty("user.home");
+            List<File> dirs = new ArrayList<>();
+            String configured = System.getProperty("pdfgen.fonts.dir");
+            if (configured != null) {
+                for (String dir : configured.split(File.pathSeparator)) {
+                    dirs.add(new File(dir));
+                }
+            }
+            for (String dir : FONT_DIRS) {
+                dirs.add(new File(dir.startsWith("~") ? home + dir.substring(1) : dir));
+            }
+            File indexFile = new File(System.getProperty("pdfgen.fonts.index", home + "/.pdfgen/font-index.txt"));
+            
+            try (PdfMetrics.Timer timer = PdfMetrics.time("load.fontIndex")) {
+                return FontIndex.load(dirs, indexFile);
+            }
+        }
+    }
+    
+    /**
+     * The parsed font, or null if the file can't be read; a collection's
+     * path ends with the face's index, "file.ttc,1"
+     */
+    @SuppressWarnings("try")
+    private static BaseFont baseFont(String path) {
+        BaseFont cached = baseFonts.get(path);
+        if (cached != null) return cached;
+        
+        synchronized (baseFonts) {
+            cached = baseFonts.get(path);
+            if (cached != null) return cached;
+            try (PdfMetrics.Timer timer = PdfMetrics.time("parse.font")) {
+                int comma = path.lastIndexOf(',');
+                File file = new File(comma > 0 && path.toLowerCase().startsWith(".ttc", comma - 4)
+                    ? path.substring(0, comma) : path);
+                byte[] data = Files.readAllBytes(file.toPath());
+                // The name only identifies the font, and the face in a collection; with bytes given it isn't opened
+                BaseFont baseFont = BaseFont.createFont(file.getName() + path.substring(file.getPath().length()),
+                    BaseFont.IDENTITY_H, BaseFont.EMBEDDED, false, data, null);
+                baseFonts.put(path, baseFont);
+                return baseFont;
+            } catch (Exception e) {
+                System.err.println("Could not load font " + path + ", using the built-in font: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+}
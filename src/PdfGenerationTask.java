@@ -0,0 +1,332 @@
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.io.RandomAccessSource;
+import com.itextpdf.text.io.RandomAccessSourceFactory;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.PdfStamper;
+import com.itextpdf.text.pdf.PdfWriter;
+import com.itextpdf.text.pdf.RandomAccessFileOrArray;
+
+/**
+ * Generates a PDF from the GUI's element list on a background thread, so the
+ * window stays responsive while large files are converted.
+ *
+ * A small dialog shows which element is being added and lets the user
+ * cancel. Cancelling stops before the next element; an element in the middle
+ * of a file conversion is interrupted at its next checkpoint. The PDF is
+ * written to a temporary file next to the target and only moved into place
+ * once complete, so a cancelled or failed run never leaves a broken PDF or
+ * overwrites the previous one.
+ *
+ * When the output already holds the first parts from an earlier run (see
+ * {@link #setAlreadyWritten}), only the remaining parts are rendered. Their
+ * pages are appended to the existing PDF as an incremental update, leaving
+ * the earlier bytes as they were, so regenerating after adding an element
+ * costs about as much as the new element. Appended parts start on a new page.
+ *
+ * A running header and page numbers (see {@link #setHeaderFooter}) rule out
+ * appending: the earlier pages would keep the old total. The whole document
+ * is rendered instead.
+ */
+public class PdfGenerationTask extends SwingWorker<Void, Integer> {
+    
+    /**
+     * One element of the document
+     */
+    public interface Part {
+        void addToDocument(Document document) throws Exception;
+    }
+    
+    private final JFrame owner;
+    private final File output;
+    private final List<String> labels = new ArrayList<>();
+    private final List<Part> parts = new ArrayList<>();
+    private Runnable onFinished;
+    private int alreadyWritten;
+    private String header;
+    private boolean pageNumbers;
+    private boolean succeeded;
+    
+    // Set by whichever comes first: the background thread starting, or done() after a cancel
+    private final AtomicBoolean started = new AtomicBoolean();
+    // EDT only; onFinished waits for both, as done() runs right away on cancel
+    private boolean doneCalled;
+    private boolean backgroundStopped;
+    
+    private JDialog dialog;
+    private JProgressBar progressBar;
+    private JLabel statusLabel;
+    
+    public PdfGenerationTask(JFrame owner, File output) {
+        this.owner = owner;
+        this.output = output;
+    }
+    
+    /**
+     * Adds an element; labels are shown in the progress dialog
+     */
+    public void add(String label, Part part) {
+        labels.add(label);
+        parts.add(part);
+    }
+    
+    /**
+     * Marks the first {@code count} parts as already in the output file, from a
+     * previous run; only the rest are rendered and appended
+     */
+    public void setAlreadyWritten(int count) {
+        this.alreadyWritten = count;
+    }
+    
+    /**
+     * Draws a running header, if not empty, and "Page X of Y" if asked, on every page
+     */
+    public void setHeaderFooter(String header, boolean pageNumbers) {
+        this.header = header;
+        this.pageNumbers = pageNumbers;
+    }
+    
+    /**
+     * Whether every page gets a header or page numbers, so the document can't be appended to
+     */
+    public boolean hasHeaderFooter() {
+        return (header != null && !header.trim().isEmpty()) || pageNumbers;
+    }
+    
+    public boolean isSucceeded() {
+        return succeeded;
+    }
+    
+    /**
+     * Runs on the EDT once the task has finished, failed or been cancelled and
+     * its background thread has stopped. After a cancel that can be a moment
+     * after the dialog closes, while the current element winds down.
+     */
+    public void setOnFinished(Runnable onFinished) {
+        this.onFinished = onFinished;
+    }
+    
+    /**
+     * Shows the progress dialog and starts generating. Call on the EDT.
+     */
+    public void start() {
+        dialog = new JDialog(owner, "Generating PDF", false);
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        dialog.setLayout(new BorderLayout(10, 10));
+        
+        statusLabel = new JLabel("Starting...");
+        progressBar = new JProgressBar(alreadyWritten, parts.size());
+        progressBar.setStringPainted(true);
+        
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> {
+            cancelButton.setEnabled(false);
+            statusLabel.setText("Cancelling...");
+            cancel(true);
+        });
+        
+        JPanel center = new JPanel(new BorderLayout(5, 5));
+        center.setBorder(BorderFactory.createEmptyBorder(10, 10, 0, 10));
+        center.add(statusLabel, BorderLayout.NORTH);
+        center.add(progressBar, BorderLayout.CENTER);
+        
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(cancelButton);
+        
+        dialog.add(center, BorderLayout.CENTER);
+        dialog.add(buttons, BorderLayout.SOUTH);
+        dialog.setSize(380, 140);
+        dialog.setLocationRelativeTo(owner);
+        dialog.setVisible(true);
+        
+        execute();
+    }
+    
+    @Override
+    protected Void doInBackground() throws Exception {
+        if (!started.compareAndSet(false, true)) {
+            // Cancelled before it got to run
+            return null;
+        }
+        try {
+            generate();
+        } finally {
+            // Clear a cancel's interrupt, which would otherwise trip up posting to the EDT
+            Thread.interrupted();
+            SwingUtilities.invokeLater(() -> {
+                backgroundStopped = true;
+                finishIfStopped();
+            });
+        }
+        return null;
+    }
+    
+    @SuppressWarnings("try")
+    private void generate() throws Exception {
+        PdfMetrics.Timer generateTimer = PdfMetrics.time("generate.gui");
+        File directory = output.getAbsoluteFile().getParentFile();
+        boolean appending = alreadyWritten > 0 && output.exists() && !hasHeaderFooter();
+        // Each run gets its own temporary files, so a cancelled run still winding down can't clash with the next
+        File partial = File.createTempFile(output.getName() + ".", ".part", directory);
+        File rendered = appending ? File.createTempFile(output.getName() + ".", ".new", directory) : partial;
+        boolean moved = false;
+        
+        try {
+            int pages;
+            try (OutputStream out = new FileOutputStream(rendered)) {
+                Document document = new Document(PageSize.A4);
+                PdfWriter writer = PdfWriter.getInstance(document, out);
+                if (hasHeaderFooter()) {
+                    new RunningHeaderFooter(header, null, pageNumbers).attach(writer);
+                }
+                document.open();
+                
+                for (int i = appending ? alreadyWritten : 0; i < parts.size(); i++) {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    publish(i);
+                    parts.get(i).addToDocument(document);
+                }
+                
+                pages = writer.getPageNumber();
+                try (PdfMetrics.Timer timer = PdfMetrics.time("write")) {
+                    document.close();
+                }
+            }
+            if (appending) {
+                try (PdfMetrics.Timer timer = PdfMetrics.time("write.append")) {
+                    appendPages(rendered, partial);
+                }
+            }
+            generateTimer.close(); // Only completed documents are timed
+            PdfMetrics.documentWritten(parts.size() - (appending ? alreadyWritten : 0), pages, partial.length());
+            
+            // Cancelled while writing: the user was told nothing changed, so leave the output alone
+            if (isCancelled()) {
+                return;
+            }
+            Files.move(partial.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+        } finally {
+            if (appending) {
+                rendered.delete();
+            }
+            if (!moved) {
+                partial.delete();
+            }
+        }
+    }
+    
+    /**
+     * Writes the current output plus an incremental update adding the pages of {@code pages}
+     */
+    private void appendPages(File pages, File destination) throws Exception {
+        PdfReader existing = openPartial(output);
+        PdfReader added = openPartial(pages);
+        try (OutputStream out = new FileOutputStream(destination)) {
+            // Append mode copies the original bytes unchanged and writes only new objects after them
+            PdfStamper stamper = new PdfStamper(existing, out, '\0', true);
+            int pageCount = existing.getNumberOfPages();
+            for (int i = 1; i <= added.getNumberOfPages(); i++) {
+                Rectangle size = added.getPageSizeWithRotation(i);
+                stamper.insertPage(++pageCount, size);
+                stamper.getUnderContent(pageCount).addTemplate(stamper.getImportedPage(added, i), 0, 0);
+            }
+            stamper.close();
+        } finally {
+            existing.close();
+            added.close();
+        }
+    }
+    
+    /**
+     * A reader that loads objects from the file as they are needed, rather than all of them up front
+     */
+    private static PdfReader openPartial(File pdf) throws IOException {
+        RandomAccessSource source = new RandomAccessSourceFactory().createBestSource(pdf.getPath());
+        return new PdfReader(new RandomAccessFileOrArray(source), null);
+    }
+    
+    @Override
+    protected void process(List<Integer> chunks) {
+        int index = chunks.get(chunks.size() - 1);
+        progressBar.setValue(index);
+        statusLabel.setText(String.format("Adding %s (%d of %d)", labels.get(index), index + 1, parts.size()));
+    }
+    
+    /**
+     * Runs onFinished once done() has been called and the background thread has stopped
+     */
+    private void finishIfStopped() {
+        if (doneCalled && backgroundStopped && onFinished != null) {
+            Runnable finished = onFinished;
+            onFinished = null;
+            finished.run();
+        }
+    }
+    
+    @Override
+    protected void done() {
+        dialog.dispose();
+        try {
+            // Known before onFinished runs, so it can tell whether the output is complete
+            get();
+            succeeded = true;
+        } catch (Exception e) {
+            // Reported below
+        }
+        doneCalled = true;
+        if (started.compareAndSet(false, true)) {
+            // Cancelled before the background thread picked it up; it never will now
+            backgroundStopped = true;
+        }
+        finishIfStopped();
+        
+        try {
+            get();
+            JOptionPane.showMessageDialog(owner,
+                "PDF generated successfully!\n" + output.getPath(),
+                "Success",
+                JOptionPane.INFORMATION_MESSAGE);
+        } catch (CancellationException e) {
+            JOptionPane.showMessageDialog(owner,
+                "PDF generation was cancelled.",
+                "Cancelled",
+                JOptionPane.INFORMATION_MESSAGE);
+        } catch (InterruptedException | ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            JOptionPane.showMessageDialog(owner,
+                "Error generating PDF: " + cause.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            cause.printStackTrace();
+        }
+    }
+}
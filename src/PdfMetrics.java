@@ -0,0 +1,305 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.ObjectName;
+
+/**
+ * Stage timings and document statistics for every generation path, readable
+ * in JConsole under pdfgenerator:type=PdfMetrics.
+ *
+ * A stage is timed with
+ * <pre>
+ * try (PdfMetrics.Timer timer = PdfMetrics.time("parse.docx")) {
+ *     ...
+ * }
+ * </pre>
+ * which records its wall time and the bytes the calling thread allocated
+ * meanwhile. The timer is never used inside the block, so methods that time
+ * a stage are marked @SuppressWarnings("try"). Stage names are dotted: generate.* for a whole document,
+ * prepare.* for an element's background work, parse.* for POI, decode.image,
+ * layout.* for adding to the document and write for closing it. Each stage
+ * and each document statistic is kept as a histogram with buckets an eighth
+ * of a power of two wide, so percentiles are within about 12%.
+ *
+ * The MBean is registered on first use, so an app that never generates
+ * anything doesn't pay for JMX at startup.
+ */
+public class PdfMetrics {
+    
+    /**
+     * What JConsole shows: one row per stage plus document totals
+     */
+    public interface StatsMXBean {
+        StageStats[] getStages();
+        
+        long getDocuments();
+        
+        double getElementsPerDocumentMean();
+        
+        long getElementsPerDocumentMax();
+        
+        double getPagesPerDocumentMean();
+        
+        long getPagesPerDocumentP95();
+        
+        double getOutputBytesPerDocumentMean();
+        
+        long getOutputBytesPerDocumentP95();
+        
+        /**
+         * Output bytes over time spent in generate.* stages
+         */
+        double getOutputBytesPerSecond();
+        
+        void reset();
+    }
+    
+    /**
+     * Summary of one stage, shown as a table row
+     */
+    public static class StageStats {
+        private final String name;
+        private final Histogram nanos;
+        private final Histogram allocated;
+        
+        StageStats(String name, Histogram nanos, Histogram allocated) {
+            this.name = name;
+            this.nanos = nanos;
+            this.allocated = allocated;
+        }
+        
+        public String getName() { return name; }
+        public long getCount() { return nanos.count; }
+        public double getTotalMillis() { return nanos.sum / 1e6; }
+        public double getMeanMillis() { return nanos.mean() / 1e6; }
+        public double getP50Millis() { return nanos.percentile(50) / 1e6; }
+        public double getP95Millis() { return nanos.percentile(95) / 1e6; }
+        public double getP99Millis() { return nanos.percentile(99) / 1e6; }
+        public double getMaxMillis() { return nanos.max / 1e6; }
+        public double getMeanAllocatedBytes() { return allocated.mean(); }
+        public long getP95AllocatedBytes() { return allocated.percentile(95); }
+        public long getMaxAllocatedBytes() { return allocated.max; }
+    }
+    
+    /**
+     * Times one stage on the current thread; close it when the stage ends
+     */
+    public static class Timer implements AutoCloseable {
+        private final String stage;
+        private final long startNanos;
+        private final long startAllocated;
+        private boolean closed;
+        
+        private Timer(String stage) {
+            this.stage = stage;
+            this.startAllocated = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+        
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            long nanos = System.nanoTime() - startNanos;
+            long allocated = startAllocated < 0 ? -1 : allocatedBytes() - startAllocated;
+            INSTANCE.record(stage, nanos, allocated);
+        }
+    }
+    
+    /**
+     * Log-linear histogram of non-negative longs
+     */
+    static class Histogram {
+        // Values below 8 get a bucket each; above that, 8 buckets per power of two
+        private static final int SUB_BUCKETS = 8;
+        private final long[] buckets = new long[(64 - 3) * SUB_BUCKETS + SUB_BUCKETS];
+        
+        long count;
+        long sum;
+        long max;
+        
+        void record(long value) {
+            if (value < 0) return;
+            buckets[indexOf(value)]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+        
+        double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+        
+        /**
+         * Upper bound of the bucket holding the given percentile
+         */
+        long percentile(double percent) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(count * percent / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(max, upperBound(i));
+                }
+            }
+            return max;
+        }
+        
+        Histogram copy() {
+            Histogram copy = new Histogram();
+            System.arraycopy(buckets, 0, copy.buckets, 0, buckets.length);
+            copy.count = count;
+            copy.sum = sum;
+            copy.max = max;
+            return copy;
+        }
+        
+        private static int indexOf(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+            return (exponent - 2) * SUB_BUCKETS + sub;
+        }
+        
+        private static long upperBound(int index) {
+            if (index < SUB_BUCKETS) return index;
+            int exponent = index / SUB_BUCKETS + 2;
+            long sub = index % SUB_BUCKETS;
+            long width = 1L << (exponent - 3);
+            return ((SUB_BUCKETS + sub) << (exponent - 3)) + width - 1;
+        }
+    }
+    
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    
+    private static final PdfMetrics INSTANCE = new PdfMetrics();
+    
+    private final Map<String, Histogram[]> stages = new TreeMap<>();
+    private Histogram elements = new Histogram();
+    private Histogram pages = new Histogram();
+    private Histogram outputBytes = new Histogram();
+    
+    private PdfMetrics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(),
+                new ObjectName("pdfgenerator:type=PdfMetrics"));
+        } catch (Exception e) {
+            // Already registered by another class loader, or no JMX; metrics are still collected
+        }
+    }
+    
+    public static Timer time(String stage) {
+        return new Timer(stage);
+    }
+    
+    /**
+     * Records a finished document; pass -1 for an element count that isn't known
+     */
+    public static void documentWritten(int elementCount, int pageCount, long bytes) {
+        synchronized (INSTANCE) {
+            INSTANCE.elements.record(elementCount); // Negative values are ignored
+            INSTANCE.pages.record(pageCount);
+            INSTANCE.outputBytes.record(bytes);
+        }
+    }
+    
+    private synchronized void record(String stage, long nanos, long allocated) {
+        Histogram[] histograms = stages.get(stage);
+        if (histograms == null) {
+            histograms = new Histogram[] { new Histogram(), new Histogram() };
+            stages.put(stage, histograms);
+        }
+        histograms[0].record(nanos);
+        histograms[1].record(allocated);
+    }
+    
+    /**
+     * Bytes allocated so far by the current thread, or -1 where the JVM can't tell
+     */
+    private static long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+    
+    private class Bean implements StatsMXBean {
+        public StageStats[] getStages() {
+            synchronized (PdfMetrics.this) {
+                List<StageStats> rows = new ArrayList<>();
+                for (Map.Entry<String, Histogram[]> stage : stages.entrySet()) {
+                    rows.add(new StageStats(stage.getKey(), stage.getValue()[0].copy(), stage.getValue()[1].copy()));
+                }
+                return rows.toArray(new StageStats[0]);
+            }
+        }
+        
+        public long getDocuments() {
+            synchronized (PdfMetrics.this) {
+                return pages.count;
+            }
+        }
+        
+        public double getElementsPerDocumentMean() {
+            synchronized (PdfMetrics.this) {
+                return elements.mean();
+            }
+        }
+        
+        public long getElementsPerDocumentMax() {
+            synchronized (PdfMetrics.this) {
+                return elements.max;
+            }
+        }
+        
+        public double getPagesPerDocumentMean() {
+            synchronized (PdfMetrics.this) {
+                return pages.mean();
+            }
+        }
+        
+        public long getPagesPerDocumentP95() {
+            synchronized (PdfMetrics.this) {
+                return pages.percentile(95);
+            }
+        }
+        
+        public double getOutputBytesPerDocumentMean() {
+            synchronized (PdfMetrics.this) {
+                return outputBytes.mean();
+            }
+        }
+        
+        public long getOutputBytesPerDocumentP95() {
+            synchronized (PdfMetrics.this) {
+                return outputBytes.percentile(95);
+            }
+        }
+        
+        public double getOutputBytesPerSecond() {
+            synchronized (PdfMetrics.this) {
+                long nanos = 0;
+                for (Map.Entry<String, Histogram[]> stage : stages.entrySet()) {
+                    if (stage.getKey().startsWith("generate.")) {
+                        nanos += stage.getValue()[0].sum;
+                    }
+                }
+                return nanos == 0 ? 0 : outputBytes.sum / (nanos / 1e9);
+            }
+        }
+        
+        public void reset() {
+            synchronized (PdfMetrics.this) {
+                stages.clear();
+                elements = new Histogram();
+                pages = new Histogram();
+                outputBytes = new Histogram();
+            }
+        }
+    }
+}
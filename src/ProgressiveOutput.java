@@ -0,0 +1,128 @@
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.ExceptionConverter;
+import com.itextpdf.text.pdf.PdfPageEventHelper;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ * Progressive PDF output for long conversions.
+ *
+ * iText writes each page's content to the stream as soon as the page is
+ * finished. This class flushes the stream at that moment instead of leaving
+ * the bytes in buffers until the document closes, so a streaming consumer
+ * receives the first page right away. After every page it reports pages
+ * done, bytes written and an ETA to a {@link ConversionProgressListener}.
+ * The ETA is extrapolated from the share of work the converter reports
+ * through {@link #setWorkDone(double)}.
+ */
+public class ProgressiveOutput extends PdfPageEventHelper {
+    
+    private final CountingStream stream;
+    private final ConversionProgressListener listener;
+    private final long startNanos = System.nanoTime();
+    private volatile double workDone;
+    private int pagesDone;
+    private int pagesEnded;
+    private boolean finished;
+    
+    public ProgressiveOutput(OutputStream target, ConversionProgressListener listener) {
+        this.stream = new CountingStream(new BufferedOutputStream(target));
+        this.listener = listener;
+    }
+    
+    /**
+     * Stream to hand to PdfWriter.getInstance
+     */
+    public OutputStream getStream() {
+        return stream;
+    }
+    
+    /**
+     * Registers this as the writer's page event so completed pages get flushed
+     */
+    public void attach(PdfWriter writer) {
+        writer.setPageEvent(this);
+    }
+    
+    /**
+     * Fraction (0 to 1) of the input the converter has processed, used for the ETA
+     */
+    public void setWorkDone(double fraction) {
+        workDone = Math.max(0, Math.min(1, fraction));
+    }
+    
+    /**
+     * A new page starts only after the previous one has been written out
+     */
+    @Override
+    public void onStartPage(PdfWriter writer, Document document) {
+        int completed = writer.getPageNumber() - 1;
+        if (completed > pagesDone) {
+            pagesDone = completed;
+            try {
+                stream.flush();
+            } catch (IOException e) {
+                throw new ExceptionConverter(e);
+            }
+            listener.progressed(pagesDone, stream.count, estimateRemainingMillis());
+        }
+    }
+    
+    @Override
+    public void onEndPage(PdfWriter writer, Document document) {
+        pagesEnded++;
+    }
+    
+    /**
+     * The page number may already count a page that was never started, after a final newPage
+     */
+    @Override
+    public void onCloseDocument(PdfWriter writer, Document document) {
+        pagesDone = pagesEnded;
+    }
+    
+    private long estimateRemainingMillis() {
+        double done = workDone;
+        if (done <= 0) {
+            return -1;
+        }
+        long elapsed = (System.nanoTime() - startNanos) / 1_000_000;
+        return (long) (elapsed * (1 - done) / done);
+    }
+    
+    /**
+     * Counts bytes on their way to the target and reports completion on close
+     */
+    private class CountingStream extends FilterOutputStream {
+        long count;
+        
+        CountingStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (!finished) {
+                finished = true;
+                listener.finished(pagesDone, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,523 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saved element list of a GUI document (.pdfproj).
+ *
+ * Layout: an 8 byte header, then element payloads (text, table cells, image
+ * bytes, hashes of converted files), then an index, then a 16 byte trailer
+ * pointing at the index. The index holds each element's type, list label,
+ * small metadata and where its payload lives.
+ *
+ * Opening reads only the trailer and index; payloads are memory-mapped and
+ * decoded the first time an element is rendered, so a large project opens
+ * at once. Saving back to the same file appends payloads for the elements
+ * added since, followed by a fresh index; elements already in the file are
+ * not rewritten. When more than half the file is dead space from removed
+ * elements and old indexes, the save rewrites it compactly instead. A
+ * compacted file, or one saved with Save As, is written next to the target
+ * and moved into place, so a failed save never loses the previous one.
+ */
+public class ProjectFile {
+    
+    public static final String EXTENSION = ".pdfproj";
+    
+    private static final byte[] MAGIC = "PDFGPRJ1".getBytes(StandardCharsets.US_ASCII);
+    private static final int TRAILER_MAGIC = 0x50524A58; // "PRJX"
+    private static final int VERSION = 1;
+    private static final int TRAILER_SIZE = 16;
+    
+    private static final byte TEXT = 1;
+    private static final byte TABLE = 2;
+    private static final byte IMAGE = 3;
+    private static final byte FILE = 4;
+    
+    /**
+     * Where an element's payload is in the file
+     */
+    private static class Location {
+        final long offset;
+        final long length;
+        
+        Location(long offset, long length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+    
+    private final File file;
+    private final List<PDFElement> elements = new ArrayList<>();
+    private final List<String> labels = new ArrayList<>();
+    
+    // Payloads already in the file, by element identity
+    private final Map<PDFElement, Location> locations = new IdentityHashMap<>();
+    
+    // Size of the current index and trailer at the end of the file
+    private long indexBytes;
+    
+    // Problems the last save worked around, for the user to see
+    private final List<String> warnings = new ArrayList<>();
+    
+    private ProjectFile(File file) {
+        this.file = file;
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Elements in document order; those read from the file load their payload on first use
+     */
+    public List<PDFElement> getElements() {
+        return elements;
+    }
+    
+    public List<String> getLabels() {
+        return labels;
+    }
+    
+    /**
+     * What the last save couldn't store as asked, such as images saved by path only
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+    
+    /**
+     * Files converted by this project's elements that have changed or gone
+     * since it was saved. Reads each file to hash it, so it's not free.
+     */
+    public List<String> changedSources() {
+        List<String> changed = new ArrayList<>();
+        for (PDFElement element : elements) {
+            if (!(element instanceof StoredElement) || ((StoredElement) element).type != FILE) continue;
+            String path = ((StoredElement) element).meta[0];
+            try {
+                ConvertedFileElement converted = (ConvertedFileElement) ((StoredElement) element).load();
+                File source = new File(path);
+                if (!source.exists()) {
+                    changed.add(path + " (not found)");
+                } else if (converted.sourceHash != null && !Arrays.equals(converted.sourceHash, hashOf(source))) {
+                    changed.add(path);
+                }
+            } catch (IOException e) {
+                changed.add(path + " (" + e.getMessage() + ")");
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Reads a project's index without touching the payloads
+     */
+    public static ProjectFile open(File file) throws IOException {
+        ProjectFile project = new ProjectFile(file);
+        
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] magic = new byte[MAGIC.length];
+            raf.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || raf.length() < MAGIC.length + TRAILER_SIZE) {
+                throw new IOException("Not a PDF Generator project: " + file.getName());
+            }
+            
+            raf.seek(raf.length() - TRAILER_SIZE);
+            long indexOffset = raf.readLong();
+            int version = raf.readInt();
+            if (raf.readInt() != TRAILER_MAGIC || indexOffset < MAGIC.length || indexOffset >= raf.length()) {
+                throw new IOException("Project file is incomplete or damaged: " + file.getName());
+            }
+            if (version > VERSION) {
+                throw new IOException("Project was saved by a newer version: " + file.getName());
+            }
+            project.indexBytes = raf.length() - indexOffset;
+            
+            raf.seek(indexOffset);
+            int count = raf.readInt();
+            for (int i = 0; i < count; i++) {
+                byte type = raf.readByte();
+                String label = raf.readUTF();
+                String[] meta = new String[raf.readUnsignedByte()];
+                for (int j = 0; j < meta.length; j++) {
+                    meta[j] = raf.readUTF();
+                }
+                Location location = new Location(raf.readLong(), raf.readLong());
+                
+                StoredElement element = new StoredElement(project, type, meta);
+                project.elements.add(element);
+                project.labels.add(label);
+                project.locations.put(element, location);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Project file is incomplete or damaged: " + file.getName(), e);
+        }
+        return project;
+    }
+    
+    /**
+     * Saves the element list to a new project file, replacing whatever was there
+     */
+    public static ProjectFile saveAs(File file, List<PDFElement> elements, List<String> labels) throws IOException {
+        // The elements may still be loading their payloads from the file being replaced
+        File temp = new File(file.getPath() + ".tmp");
+        ProjectFile written = new ProjectFile(temp);
+        try {
+            written.rewrite(elements, labels, null);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        
+        ProjectFile project = new ProjectFile(file);
+        project.locations.putAll(written.locations);
+        project.indexBytes = written.indexBytes;
+        project.elements.addAll(elements);
+        project.labels.addAll(labels);
+        project.warnings.addAll(written.warnings);
+        
+        // Elements of a project that was just overwritten now find their payloads in the new layout
+        for (PDFElement element : elements) {
+            if (element instanceof StoredElement) {
+                ProjectFile owner = ((StoredElement) element).project;
+                if (owner.file.getAbsoluteFile().equals(file.getAbsoluteFile())) {
+                    owner.relocate(element, project.locations.get(element));
+                }
+            }
+        }
+        return project;
+    }
+    
+    /**
+     * Saves the element list back to this project's file, appending only the
+     * payloads of elements the file doesn't hold yet
+     */
+    public synchronized void save(List<PDFElement> newElements, List<String> newLabels) throws IOException {
+        warnings.clear();
+        long live = 0;
+        for (PDFElement element : newElements) {
+            Location location = locations.get(element);
+            if (location != null) live += location.length;
+        }
+        long dead = file.length() - MAGIC.length - indexBytes - live;
+        
+        if (dead > file.length() / 2) {
+            // Mostly dead space: write a compact copy next to it and swap it in
+            File temp = new File(file.getPath() + ".tmp");
+            ProjectFile compacted = new ProjectFile(temp);
+            try {
+                compacted.rewrite(newElements, newLabels, this);
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                temp.delete();
+                throw e;
+            }
+            locations.clear();
+            locations.putAll(compacted.locations);
+            indexBytes = compacted.indexBytes;
+            warnings.addAll(compacted.warnings);
+        } else {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                long oldLength = raf.length();
+                try {
+                    raf.seek(oldLength);
+                    writeElements(raf, newElements, this);
+                    writeIndex(raf, newElements, newLabels);
+                } catch (IOException | RuntimeException e) {
+                    // Cut the partial append off so the previous index is at the end again
+                    raf.setLength(oldLength);
+                    throw e;
+                }
+            }
+        }
+        
+        elements.clear();
+        elements.addAll(newElements);
+        labels.clear();
+        labels.addAll(newLabels);
+    }
+    
+    /**
+     * Writes every element into this (new) file, copying payloads from {@code source} where it has them
+     */
+    private void rewrite(List<PDFElement> newElements, List<String> newLabels, ProjectFile source) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.write(MAGIC);
+            writeElements(raf, newElements, source);
+            writeIndex(raf, newElements, newLabels);
+        }
+        elements.addAll(newElements);
+        labels.addAll(newLabels);
+    }
+    
+    /**
+     * Points an element at its payload's new place after the file was replaced
+     */
+    private synchronized void relocate(PDFElement element, Location location) {
+        locations.put(element, location);
+    }
+    
+    /**
+     * Appends payloads for elements not already in this file. Payloads held by
+     * {@code source} (another file being compacted) are copied without decoding.
+     */
+    private void writeElements(RandomAccessFile raf, List<PDFElement> newElements, ProjectFile source) throws IOException {
+        for (PDFElement element : newElements) {
+            if (source == this && locations.containsKey(element)) {
+                continue;
+            }
+            
+            byte[] payload = source != null && source.locations.containsKey(element)
+                ? source.readPayload(element)
+                : encodePayload(element);
+            long offset = raf.getFilePointer();
+            raf.write(payload);
+            locations.put(element, new Location(offset, payload.length));
+        }
+    }
+    
+    private void writeIndex(RandomAccessFile raf, List<PDFElement> newElements, List<String> newLabels) throws IOException {
+        long indexOffset = raf.getFilePointer();
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(newElements.size());
+        for (int i = 0; i < newElements.size(); i++) {
+            PDFElement element = newElements.get(i);
+            Location location = locations.get(element);
+            out.writeByte(typeOf(element));
+            out.writeUTF(newLabels.get(i));
+            String[] meta = metadataOf(element);
+            out.writeByte(meta.length);
+            for (String value : meta) {
+                out.writeUTF(value);
+            }
+            out.writeLong(location.offset);
+            out.writeLong(location.length);
+        }
+        
+        // Trailer last, so a save cut short leaves no valid trailer at the end
+        out.writeLong(indexOffset);
+        out.writeInt(VERSION);
+        out.writeInt(TRAILER_MAGIC);
+        raf.write(bytes.toByteArray());
+        indexBytes = bytes.size();
+    }
+    
+    /**
+     * Maps an element's payload from the file; returns a copy
+     */
+    private synchronized byte[] readPayload(PDFElement element) throws IOException {
+        Location location = locations.get(element);
+        byte[] payload = new byte[(int) location.length];
+        if (payload.length == 0) {
+            return payload;
+        }
+        // Read straight into the array; a mapping would only be copied, and would keep the file locked on Windows
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, location.offset + buffer.position()) < 0) {
+                    throw new IOException("Project file is incomplete or damaged: " + file.getName());
+                }
+            }
+        }
+        return payload;
+    }
+    
+    // Element encoding. Small, frequently listed fields go in the index
+    // metadata; anything that can grow large goes in the payload.
+    
+    private static byte typeOf(PDFElement element) {
+        if (element instanceof StoredElement) return ((StoredElement) element).type;
+        if (element instanceof TextElement) return TEXT;
+        if (element instanceof TableElement) return TABLE;
+        if (element instanceof ImageElement) return IMAGE;
+        if (element instanceof ConvertedFileElement) return FILE;
+        throw new IllegalArgumentException("Cannot save " + element.getClass().getSimpleName());
+    }
+    
+    private static String[] metadataOf(PDFElement element) {
+        if (element instanceof StoredElement) {
+            return ((StoredElement) element).meta;
+        } else if (element instanceof TextElement) {
+            return new String[] { ((TextElement) element).title };
+        } else if (element instanceof ImageElement) {
+            return new String[] { ((ImageElement) element).path };
+        } else if (element instanceof ConvertedFileElement) {
+            ConvertedFileElement converted = (ConvertedFileElement) element;
+            ConversionSelection selection = converted.selection;
+            return new String[] { converted.filePath, selection.getSlidesSpec(),
+                selection.getSheetsSpec(), selection.getRowsSpec() };
+        }
+        return new String[0];
+    }
+    
+    private byte[] encodePayload(PDFElement element) throws IOException {
+        if (element instanceof StoredElement) {
+            // Stored in another project; bring its payload across as is
+            StoredElement stored = (StoredElement) element;
+            return stored.project.readPayload(stored);
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        
+        if (element instanceof TextElement) {
+            writeString(out, ((TextElement) element).text);
+        } else if (element instanceof TableElement) {
+            ColumnarTable table = ((TableElement) element).table;
+            out.writeInt(table.getColumnCount());
+            for (int j = 0; j < table.getColumnCount(); j++) {
+                writeString(out, table.getHeader(j));
+            }
+            out.writeInt(table.getRowCount());
+            for (int i = 0; i < table.getRowCount(); i++) {
+                for (int j = 0; j < table.getColumnCount(); j++) {
+                    String cell = table.getText(i, j);
+                    out.writeBoolean(cell != null);
+                    if (cell != null) writeString(out, cell);
+                }
+            }
+        } else if (element instanceof ImageElement) {
+            ImageElement image = (ImageElement) element;
+            // Local images are embedded so the project survives the file moving; URLs are fetched when rendered
+            if (image.data != null) {
+                out.write(image.data);
+            } else if (!image.isUrl()) {
+                File imageFile = new File(image.path);
+                if (imageFile.isFile()) {
+                    out.write(Files.readAllBytes(imageFile.toPath()));
+                } else {
+                    // Saved by path, in case the image comes back before the PDF is generated
+                    warnings.add("Image " + image.path + " was not found; only its path was saved");
+                }
+            }
+        } else if (element instanceof ConvertedFileElement) {
+            File source = new File(((ConvertedFileElement) element).filePath);
+            if (source.exists()) {
+                out.write(hashOf(source));
+            }
+        }
+        
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    private static PDFElement decode(byte type, String[] meta, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        switch (type) {
+            case TEXT:
+                return new TextElement(meta[0], readString(in));
+            case TABLE:
+                String[] headers = new String[in.readInt()];
+                for (int i = 0; i < headers.length; i++) {
+                    headers[i] = readString(in);
+                }
+                ColumnarTable table = new ColumnarTable(headers);
+                int rows = in.readInt();
+                String[] row = new String[headers.length];
+                for (int i = 0; i < rows; i++) {
+                    for (int j = 0; j < row.length; j++) {
+                        row[j] = in.readBoolean() ? readString(in) : null;
+                    }
+                    table.addRow((Object[]) row);
+                }
+                return new TableElement(table);
+            case IMAGE:
+                return new ImageElement(meta[0], payload.length > 0 ? payload : null);
+            case FILE:
+                ConvertedFileElement converted = new ConvertedFileElement(meta[0],
+                    new ConversionSelection(meta[1], meta[2], meta[3]), new ConversionBudget());
+                converted.sourceHash = payload.length > 0 ? payload : null;
+                return converted;
+            default:
+                throw new IOException("Unknown element type " + type + " in project file");
+        }
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        // writeUTF is limited to 64 KB, too small for pasted text
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * SHA-256 of a file's contents
+     */
+    private static byte[] hashOf(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+            byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) != -1) {
+                // Digest as we go
+            }
+        }
+        return digest.digest();
+    }
+    
+    /**
+     * An element read from a project. Its payload is decoded into the real
+     * element the first time it is prepared or inspected.
+     */
+    static class StoredElement extends PDFElement {
+        private final ProjectFile project;
+        private final byte type;
+        private final String[] meta;
+        private PDFElement loaded;
+        
+        StoredElement(ProjectFile project, byte type, String[] meta) {
+            this.project = project;
+            this.type = type;
+            this.meta = meta;
+        }
+        
+        /**
+         * The decoded element, reading its payload on first call
+         */
+        synchronized PDFElement load() throws IOException {
+            if (loaded == null) {
+                loaded = decode(type, meta, project.readPayload(this));
+            }
+            return loaded;
+        }
+        
+        ElementPreparer.Placement prepare() throws Exception {
+            return load().prepare();
+        }
+    }
+}
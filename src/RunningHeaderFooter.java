@@ -0,0 +1,135 @@
+import java.util.HashMap;
+import java.util.Map;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.FontFactory;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.ColumnText;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfPageEventHelper;
+import com.itextpdf.text.pdf.PdfTemplate;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ * Running header and footer drawn on every page, in the top and bottom
+ * margins, with an optional "Page X of Y".
+ *
+ * Each distinct header and footer text is drawn once into a template (a
+ * form XObject) that every page then references, so a thousand-page report
+ * holds the text once rather than a thousand times. The total page count
+ * isn't known until the end, so pages reference one more, empty template
+ * for it, which is filled in when the document closes; nothing is rendered
+ * twice.
+ *
+ * Register with {@link #attach(PdfWriter)} before the document is opened.
+ * The header and footer can be changed part way through; the change shows
+ * from the next page finished.
+ */
+public class RunningHeaderFooter extends PdfPageEventHelper {
+    
+    private static final float FONT_SIZE = 9f;
+    
+    private String header;
+    private String footer;
+    private final boolean pageNumbers;
+    
+    private Font font;
+    private final Map<String, PdfTemplate> templates = new HashMap<>();
+    private PdfTemplate total;
+    
+    public RunningHeaderFooter(String header, String footer, boolean pageNumbers) {
+        this.header = emptyToNull(header);
+        this.footer = emptyToNull(footer);
+        this.pageNumbers = pageNumbers;
+    }
+    
+    public void attach(PdfWriter writer) {
+        writer.setPageEvent(this);
+    }
+    
+    public void setHeader(String header) {
+        this.header = emptyToNull(header);
+    }
+    
+    public void setFooter(String footer) {
+        this.footer = emptyToNull(footer);
+    }
+    
+    @Override
+    public void onEndPage(PdfWriter writer, Document document) {
+        if (font == null) {
+            font = PdfFonts.getFont(FontFactory.HELVETICA, FONT_SIZE, BaseColor.GRAY);
+        }
+        PdfContentByte canvas = writer.getDirectContent();
+        Rectangle page = document.getPageSize();
+        float left = page.getLeft(document.leftMargin());
+        float width = page.getWidth() - document.leftMargin() - document.rightMargin();
+        
+        // Baselines halfway into the margins
+        float headerBaseline = page.getTop(document.topMargin() / 2);
+        float footerBaseline = page.getBottom(document.bottomMargin() / 2);
+        if (header != null) {
+            canvas.addTemplate(textTemplate(canvas, header, width), left, headerBaseline - descent());
+        }
+        if (footer != null) {
+            canvas.addTemplate(textTemplate(canvas, footer, width), left, footerBaseline - descent());
+        }
+        if (pageNumbers) {
+            addPageNumber(writer, canvas, page.getRight(document.rightMargin()), footerBaseline);
+        }
+    }
+    
+    @Override
+    public void onCloseDocument(PdfWriter writer, Document document) {
+        if (total != null) {
+            ColumnText.showTextAligned(total, Element.ALIGN_LEFT,
+                new Phrase(String.valueOf(writer.getPageNumber()), font), 0, descent(), 0);
+        }
+    }
+    
+    /**
+     * The template for a line of text, centred across the given width, with
+     * its baseline the descent above the template's origin
+     */
+    private PdfTemplate textTemplate(PdfContentByte canvas, String text, float width) {
+        PdfTemplate template = templates.get(text);
+        if (template == null) {
+            template = canvas.createTemplate(width, FONT_SIZE * 1.5f);
+            ColumnText.showTextAligned(template, Element.ALIGN_CENTER, new Phrase(text, font), width / 2, descent(), 0);
+            templates.put(text, template);
+        }
+        return template;
+    }
+    
+    /**
+     * "Page X of " right-aligned against the total's template, which has room for five digits
+     */
+    private void addPageNumber(PdfWriter writer, PdfContentByte canvas, float right, float baseline) {
+        BaseFont baseFont = font.getCalculatedBaseFont(false);
+        float totalWidth = baseFont.getWidthPoint("00000", FONT_SIZE);
+        if (total == null) {
+            total = canvas.createTemplate(totalWidth, FONT_SIZE * 1.5f);
+        }
+        float x = right - totalWidth;
+        // Aligning drops a trailing space, so the gap before the total is left here
+        ColumnText.showTextAligned(canvas, Element.ALIGN_RIGHT,
+            new Phrase("Page " + writer.getPageNumber() + " of", font), x - baseFont.getWidthPoint(" ", FONT_SIZE), baseline, 0);
+        canvas.addTemplate(total, x, baseline - descent());
+    }
+    
+    /**
+     * Height of the baseline above a template's origin, leaving room for descenders
+     */
+    private float descent() {
+        return -font.getCalculatedBaseFont(false).getFontDescriptor(BaseFont.DESCENT, FONT_SIZE);
+    }
+    
+    private static String emptyToNull(String text) {
+        return text == null || text.trim().isEmpty() ? null : text;
+    }
+}
@@ -0,0 +1,138 @@
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+/**
+ * Reads .xlsx worksheets row by row with POI's SAX event API instead of
+ * loading the whole workbook. Sheets the visitor declines are never parsed,
+ * and a sheet stops parsing as soon as the visitor has the rows it wants.
+ */
+public class StreamingSheetReader {
+    
+    /**
+     * Receives sheets and rows as they are parsed
+     */
+    public interface SheetVisitor {
+        /**
+         * Called before a sheet is parsed. Sheet numbers are 1-based.
+         * Return false to skip the sheet without parsing it.
+         */
+        boolean startSheet(int number, String name) throws Exception;
+        
+        /**
+         * Called for each row present in the sheet. Row numbers are 1-based and
+         * missing cells are empty strings. Return false to stop reading this sheet.
+         */
+        boolean row(int number, String[] cells) throws Exception;
+        
+        void endSheet() throws Exception;
+    }
+    
+    public static void read(File file, SheetVisitor visitor) throws Exception {
+        OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            int number = 0;
+            while (sheets.hasNext()) {
+                try (InputStream in = sheets.next()) {
+                    number++;
+                    if (!visitor.startSheet(number, sheets.getSheetName())) {
+                        continue;
+                    }
+                    parseSheet(in, strings, styles, visitor);
+                    visitor.endSheet();
+                }
+            }
+        } finally {
+            // Read-only packages are released with revert(); close() would try to save
+            pkg.revert();
+        }
+    }
+    
+    private static void parseSheet(InputStream in, ReadOnlySharedStringsTable strings, StylesTable styles,
+                                   SheetVisitor visitor) throws Exception {
+        RowCollector rows = new RowCollector(visitor);
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, rows, new DataFormatter(), true));
+        
+        try {
+            parser.parse(new InputSource(in));
+        } catch (StopSheet stop) {
+            if (stop.getCause() != null) {
+                throw (Exception) stop.getCause();
+            }
+            // Otherwise the visitor has everything it needs from this sheet
+        }
+    }
+    
+    /**
+     * Thrown through the SAX parser to abandon the rest of a sheet, carrying
+     * the visitor's exception if it failed. Content handler callbacks cannot
+     * throw checked exceptions, hence the unchecked type.
+     */
+    private static class StopSheet extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        StopSheet(Exception cause) {
+            super(cause);
+        }
+    }
+    
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final SheetVisitor visitor;
+        private final List<String> cells = new ArrayList<>();
+        
+        RowCollector(SheetVisitor visitor) {
+            this.visitor = visitor;
+        }
+        
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+        }
+        
+        @Override
+        public void endRow(int rowNum) {
+            boolean more;
+            try {
+                more = visitor.row(rowNum + 1, cells.toArray(new String[0]));
+            } catch (Exception e) {
+                throw new StopSheet(e);
+            }
+            if (!more) {
+                throw new StopSheet(null);
+            }
+        }
+        
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference == null ? cells.size() : new CellReference(cellReference).getCol();
+            while (cells.size() < col) {
+                cells.add("");
+            }
+            cells.add(formattedValue == null ? "" : formattedValue);
+        }
+        
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
+    }
+}
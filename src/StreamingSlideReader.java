@@ -0,0 +1,150 @@
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.util.XMLHelper;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads the text of .pptx slides straight from the package with SAX instead
+ * of building an XMLSlideShow, which parses every slide up front. Only the
+ * slide list in presentation.xml is read for skipped slides.
+ */
+public class StreamingSlideReader {
+    
+    private static final String RELATIONSHIPS_NS =
+        "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    
+    /**
+     * Receives slides in presentation order
+     */
+    public interface SlideVisitor {
+        /**
+         * Return false to skip the slide without parsing it. Slide numbers are 1-based.
+         */
+        boolean wantSlide(int number);
+        
+        /**
+         * True once no later slide is wanted, so reading can stop
+         */
+        boolean isDone(int number);
+        
+        /**
+         * Called with the text of each top-level text shape, in document order
+         */
+        void slide(int number, List<String> shapeTexts) throws Exception;
+    }
+    
+    public static void read(File file, SlideVisitor visitor) throws Exception {
+        OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            PackagePart presentation = presentationPart(pkg);
+            List<String> slideIds = readSlideIds(presentation);
+            
+            for (int i = 0; i < slideIds.size(); i++) {
+                int number = i + 1;
+                if (visitor.isDone(number)) {
+                    break;
+                }
+                if (!visitor.wantSlide(number)) {
+                    continue;
+                }
+                PackagePart slide = presentation.getRelatedPart(presentation.getRelationship(slideIds.get(i)));
+                visitor.slide(number, readShapeTexts(slide));
+            }
+        } finally {
+            // Read-only packages are released with revert(); close() would try to save
+            pkg.revert();
+        }
+    }
+    
+    private static PackagePart presentationPart(OPCPackage pkg) {
+        return pkg.getPart(pkg.getRelationshipsByType(PackageRelationshipTypes.CORE_DOCUMENT).getRelationship(0));
+    }
+    
+    /**
+     * Relationship ids of the slides, in presentation order, from p:sldIdLst
+     */
+    private static List<String> readSlideIds(PackagePart presentation) throws Exception {
+        List<String> ids = new ArrayList<>();
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if (localName.equals("sldId")) {
+                    ids.add(attributes.getValue(RELATIONSHIPS_NS, "id"));
+                }
+            }
+        });
+        
+        try (InputStream in = presentation.getInputStream()) {
+            parser.parse(new InputSource(in));
+        }
+        return ids;
+    }
+    
+    /**
+     * Text of each shape directly in the slide's shape tree, paragraphs joined
+     * with newlines, matching XSLFTextShape.getText()
+     */
+    private static List<String> readShapeTexts(PackagePart slide) throws Exception {
+        List<String> texts = new ArrayList<>();
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new DefaultHandler() {
+            private final Deque<String> path = new ArrayDeque<>();
+            private StringBuilder shapeText;
+            private boolean inText;
+            private int paragraphs;
+            
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if (localName.equals("sp") && "spTree".equals(path.peek())) {
+                    shapeText = new StringBuilder();
+                    paragraphs = 0;
+                } else if (shapeText != null) {
+                    if (localName.equals("p") && "txBody".equals(path.peek())) {
+                        if (paragraphs++ > 0) shapeText.append('\n');
+                    } else if (localName.equals("br")) {
+                        shapeText.append('\n');
+                    } else if (localName.equals("t")) {
+                        inText = true;
+                    }
+                }
+                path.push(localName);
+            }
+            
+            @Override
+            public void endElement(String uri, String localName, String qName) {
+                path.pop();
+                if (localName.equals("t")) {
+                    inText = false;
+                } else if (localName.equals("sp") && shapeText != null && "spTree".equals(path.peek())) {
+                    texts.add(shapeText.toString());
+                    shapeText = null;
+                }
+            }
+            
+            @Override
+            public void characters(char[] ch, int start, int length) {
+                if (inText && shapeText != null) {
+                    shapeText.append(ch, start, length);
+                }
+            }
+        });
+        
+        try (InputStream in = slide.getInputStream()) {
+            parser.parse(new InputSource(in));
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,89 @@
+import javax.swing.table.DefaultTableModel;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.FontFactory;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+
+/**
+ * A table with a dark header row. Cells are kept in a ColumnarTable and only
+ * turned into PDF cells while the table is being written, a batch of rows at
+ * a time, so a huge table never exists as a full grid of objects.
+ */
+class TableElement extends PDFElement {
+    
+    // Rows handed to the document at a time while the table is laid out
+    private static final int FLUSH_ROWS = 50;
+    
+    ColumnarTable table;
+    
+    TableElement(ColumnarTable table) {
+        table.finish();
+        this.table = table;
+    }
+    
+    TableElement(DefaultTableModel model) {
+        int rows = model.getRowCount();
+        int cols = model.getColumnCount();
+        
+        String[] headers = new String[cols];
+        for (int i = 0; i < cols; i++) {
+            headers[i] = model.getColumnName(i);
+        }
+        
+        table = new ColumnarTable(headers);
+        Object[] row = new Object[cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                row[j] = model.getValueAt(i, j);
+            }
+            table.addRow(row);
+        }
+        table.finish();
+    }
+    
+    ElementPreparer.Placement prepare() throws Exception {
+        // Nothing slow to do up front; the cells are built as they are written
+        return document -> {
+            int columns = table.getColumnCount();
+            PdfPTable pdfTable = new PdfPTable(columns);
+            pdfTable.setWidthPercentage(100);
+            // iText applies both spacings on every add: before only on the first, after only on the last
+            pdfTable.setSpacingBefore(10f);
+            pdfTable.setComplete(false);
+            
+            // Add headers
+            com.itextpdf.text.Font headerFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 10, BaseColor.WHITE);
+            for (int j = 0; j < columns; j++) {
+                PdfPCell cell = new PdfPCell(new Phrase(table.getHeader(j), headerFont));
+                cell.setBackgroundColor(BaseColor.DARK_GRAY);
+                cell.setPadding(5f);
+                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+                pdfTable.addCell(cell);
+            }
+            
+            // Add data; addCell(Phrase) copies the default cell, so no cell is built per value here
+            com.itextpdf.text.Font dataFont = PdfFonts.getFont(FontFactory.HELVETICA, 10, BaseColor.BLACK);
+            pdfTable.getDefaultCell().setPadding(5f);
+            for (int i = 0; i < table.getRowCount(); i++) {
+                // Lay out finished rows now so their cells can be dropped;
+                // the last rows are kept back for the final add, which carries spacingAfter
+                if (i > 0 && i % FLUSH_ROWS == 0) {
+                    document.add(pdfTable);
+                    pdfTable.setSpacingBefore(0f);
+                }
+                
+                for (int j = 0; j < columns; j++) {
+                    String cellText = table.getText(i, j);
+                    pdfTable.addCell(new Phrase(cellText == null ? "" : cellText, dataFont));
+                }
+            }
+            
+            pdfTable.setSpacingAfter(15f);
+            pdfTable.setComplete(true);
+            document.add(pdfTable);
+        };
+    }
+}
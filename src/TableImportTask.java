@@ -0,0 +1,256 @@
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * Imports a CSV, TSV or XLSX file into the Table tab's model. The file is
+ * parsed on a background thread and rows reach the model in chunks, each
+ * added with a single table event, so million-row files load without
+ * freezing the window. The first row becomes the column names; for XLSX
+ * only the first sheet is read.
+ *
+ * A dialog shows progress and lets the user cancel, keeping the rows
+ * imported so far.
+ */
+public class TableImportTask extends SwingWorker<Void, List<String[]>> {
+    
+    // Rows parsed before they are handed to the EDT
+    private static final int CHUNK_ROWS = 5000;
+    
+    private final JFrame owner;
+    private final File file;
+    private final DefaultTableModel model;
+    private Runnable onFinished;
+    
+    private boolean headerApplied;
+    private int rowsImported;
+    
+    // Bytes of a CSV/TSV file read so far; XLSX progress is shown as a row count only
+    private volatile long bytesRead;
+    
+    private JDialog dialog;
+    private JProgressBar progressBar;
+    private JLabel statusLabel;
+    
+    public TableImportTask(JFrame owner, File file, DefaultTableModel model) {
+        this.owner = owner;
+        this.file = file;
+        this.model = model;
+    }
+    
+    public static boolean canImport(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".csv") || name.endsWith(".tsv") || name.endsWith(".tab")
+            || name.endsWith(".txt") || name.endsWith(".xlsx");
+    }
+    
+    /**
+     * Runs on the EDT once the import has finished, failed or been cancelled
+     */
+    public void setOnFinished(Runnable onFinished) {
+        this.onFinished = onFinished;
+    }
+    
+    /**
+     * Shows the progress dialog and starts importing. Call on the EDT.
+     */
+    public void start() {
+        dialog = new JDialog(owner, "Importing Table", false);
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        dialog.setLayout(new BorderLayout(10, 10));
+        
+        statusLabel = new JLabel("Reading " + file.getName() + "...");
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(!isXlsx());
+        progressBar.setIndeterminate(isXlsx());
+        
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> {
+            cancelButton.setEnabled(false);
+            statusLabel.setText("Cancelling...");
+            cancel(true);
+        });
+        
+        JPanel center = new JPanel(new BorderLayout(5, 5));
+        center.setBorder(BorderFactory.createEmptyBorder(10, 10, 0, 10));
+        center.add(statusLabel, BorderLayout.NORTH);
+        center.add(progressBar, BorderLayout.CENTER);
+        
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(cancelButton);
+        
+        dialog.add(center, BorderLayout.CENTER);
+        dialog.add(buttons, BorderLayout.SOUTH);
+        dialog.setSize(380, 140);
+        dialog.setLocationRelativeTo(owner);
+        dialog.setVisible(true);
+        
+        execute();
+    }
+    
+    private boolean isXlsx() {
+        return file.getName().toLowerCase().endsWith(".xlsx");
+    }
+    
+    @Override
+    protected Void doInBackground() throws Exception {
+        List<String[]> chunk = new ArrayList<>(CHUNK_ROWS);
+        
+        if (isXlsx()) {
+            StreamingSheetReader.read(file, new StreamingSheetReader.SheetVisitor() {
+                public boolean startSheet(int number, String name) {
+                    return number == 1;
+                }
+                
+                public boolean row(int number, String[] cells) {
+                    return addRow(chunk, cells);
+                }
+                
+                public void endSheet() {
+                }
+            });
+        } else {
+            long length = Math.max(1, file.length());
+            try (InputStream in = new CountingInputStream(Files.newInputStream(file.toPath()))) {
+                DelimitedTextReader reader = new DelimitedTextReader(
+                    new InputStreamReader(in, StandardCharsets.UTF_8), DelimitedTextReader.delimiterFor(file.getName()));
+                String[] cells;
+                while ((cells = reader.next()) != null) {
+                    if (!addRow(chunk, cells)) break;
+                    setProgress((int) Math.min(100, bytesRead * 100 / length));
+                }
+            }
+        }
+        
+        if (!chunk.isEmpty() && !isCancelled()) {
+            publish(new ArrayList<>(chunk));
+        }
+        return null;
+    }
+    
+    /**
+     * Collects a row, publishing full chunks; returns false once cancelled
+     */
+    private boolean addRow(List<String[]> chunk, String[] cells) {
+        if (isCancelled()) {
+            return false;
+        }
+        chunk.add(cells);
+        if (chunk.size() == CHUNK_ROWS) {
+            publish(new ArrayList<>(chunk));
+            chunk.clear();
+        }
+        return true;
+    }
+    
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected void process(List<List<String[]>> chunks) {
+        for (List<String[]> rows : chunks) {
+            int start = 0;
+            if (!headerApplied) {
+                // The first row names the columns and replaces whatever the table held
+                headerApplied = true;
+                model.setRowCount(0);
+                model.setColumnIdentifiers(rows.get(0));
+                start = 1;
+            }
+            
+            int widest = model.getColumnCount();
+            for (int i = start; i < rows.size(); i++) {
+                widest = Math.max(widest, rows.get(i).length);
+            }
+            while (model.getColumnCount() < widest) {
+                model.addColumn("Column " + (model.getColumnCount() + 1));
+            }
+            
+            // Straight into the data vector, then one event for the whole chunk
+            Vector data = model.getDataVector();
+            int columns = model.getColumnCount();
+            int first = data.size();
+            for (int i = start; i < rows.size(); i++) {
+                Vector<Object> row = new Vector<>(columns);
+                row.addAll(Arrays.asList(rows.get(i)));
+                row.setSize(columns);
+                data.add(row);
+            }
+            if (data.size() > first) {
+                model.fireTableRowsInserted(first, data.size() - 1);
+            }
+            rowsImported += data.size() - first;
+        }
+        
+        progressBar.setValue(getProgress());
+        statusLabel.setText(String.format("Imported %,d rows from %s", rowsImported, file.getName()));
+    }
+    
+    @Override
+    protected void done() {
+        dialog.dispose();
+        if (onFinished != null) {
+            onFinished.run();
+        }
+        
+        try {
+            get();
+        } catch (CancellationException e) {
+            JOptionPane.showMessageDialog(owner,
+                String.format("Import was cancelled after %,d rows.", rowsImported),
+                "Cancelled",
+                JOptionPane.INFORMATION_MESSAGE);
+        } catch (InterruptedException | ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            JOptionPane.showMessageDialog(owner,
+                "Error importing table: " + cause.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            cause.printStackTrace();
+        }
+    }
+    
+    /**
+     * Tracks how far into the file the parser has read
+     */
+    private class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) bytesRead++;
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) bytesRead += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.FontFactory;
+import com.itextpdf.text.Paragraph;
+
+/**
+ * A paragraph of text with an optional title.
+ *
+ * Long text is laid out as a run of smaller paragraphs, split at line
+ * breaks, each built just before it is added. iText re-copies the rest of
+ * a paragraph's text for every line it breaks, so one huge paragraph takes
+ * time quadratic in its length; pieces of a few KB keep it linear. Lines
+ * look the same either way: a line break already ends a justified line, and
+ * the pieces share the leading with no spacing between them.
+ */
+class TextElement extends PDFElement {
+    
+    // Rough size of each piece; pieces end at a line break, so may be longer
+    static final int CHUNK_CHARS = 4096;
+    
+    String title;
+    String text;
+    
+    TextElement(String title, String text) {
+        this.title = title;
+        this.text = text;
+    }
+    
+    ElementPreparer.Placement prepare() throws Exception {
+        return document -> {
+            if (!title.isEmpty()) {
+                com.itextpdf.text.Font titleFont = PdfFonts.getFont(FontFactory.HELVETICA_BOLD, 16, BaseColor.DARK_GRAY);
+                Paragraph titlePara = new Paragraph(title, titleFont);
+                titlePara.setSpacingAfter(10f);
+                document.add(titlePara);
+            }
+            
+            com.itextpdf.text.Font textFont = PdfFonts.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
+            int start = 0;
+            do {
+                int end = chunkEnd(text, start);
+                // The line break between pieces is implied by starting a new paragraph
+                Paragraph textPara = new Paragraph(text.substring(start, end), textFont);
+                textPara.setAlignment(Element.ALIGN_JUSTIFIED);
+                start = end + 1;
+                if (start >= text.length()) {
+                    textPara.setSpacingAfter(15f);
+                }
+                document.add(textPara);
+            } while (start < text.length());
+        };
+    }
+    
+    /**
+     * End of the piece starting at {@code start}: the first line break at or after
+     * CHUNK_CHARS in where a piece may end, or the end of the text
+     */
+    static int chunkEnd(String text, int start) {
+        if (text.length() - start <= CHUNK_CHARS) {
+            return text.length();
+        }
+        int end = text.indexOf('\n', start + CHUNK_CHARS);
+        while (end >= 0 && end < text.length() - 1 && !canEndPiece(end - start, text.charAt(end - 1))) {
+            end = text.indexOf('\n', end + 1);
+        }
+        return end < 0 || end == text.length() - 1 ? text.length() : end;
+    }
+    
+    /**
+     * Whether a piece this long may end with a line whose last character is
+     * {@code last} ('\n' for a blank line). Never after a blank line, which a
+     * paragraph would drop; and not after a space until the piece is twice
+     * CHUNK_CHARS, as a line ending in one can wrap to an extra empty line.
+     */
+    static boolean canEndPiece(int length, char last) {
+        if (last == '\n') return false;
+        return !Character.isWhitespace(last) || length >= 2 * CHUNK_CHARS;
+    }
+}
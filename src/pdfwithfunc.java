@@ -11,27 +11,13 @@ import javax.swing.border.*;
 import javax.swing.table.DefaultTableModel;
 
 // iText imports - using full path to avoid conflicts
-import com.itextpdf.text.BaseColor;
 import com.itextpdf.text.Document;
-import com.itextpdf.text.Element;
-import com.itextpdf.text.FontFactory;
-import com.itextpdf.text.Image;
 import com.itextpdf.text.PageSize;
-import com.itextpdf.text.Paragraph;
-import com.itextpdf.text.Phrase;
-import com.itextpdf.text.pdf.PdfPCell;
-import com.itextpdf.text.pdf.PdfPTable;
 import com.itextpdf.text.pdf.PdfWriter;
 
-// Apache POI imports for Word and Excel
-import org.apache.poi.xwpf.usermodel.*;
-import org.apache.poi.xslf.usermodel.*;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-
 // Other imports
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.nio.file.Files;
@@ -45,20 +31,53 @@ public class pdfwithfunc extends JFrame {
     private DefaultTableModel tableModel;
     private JTextField imagePathField;
     private JTextField fileConverterPathField;
+    private JTextField slideSelectionField;
+    private JTextField sheetSelectionField;
+    private JTextField rowSelectionField;
     private JList<String> elementsList;
     private DefaultListModel<String> elementsListModel;
     private List<PDFElement> pdfElements;
+    private JTextField headerField;
+    private JCheckBox pageNumbersCheckBox;
+    private JLabel pageCountLabel;
+    
+    // Page estimates for the element list, updated as it changes
+    private LayoutCache layoutCache;
+    
+    private static final String TITLE = "PDF Generator & Converter";
     
     // Element counter
     private int elementCounter = 0;
     
+    // Background generation in progress, if any
+    private PdfGenerationTask generationTask;
+    
+    // Elements that generation is writing; removing them from the list must not stop their preparation
+    private List<PDFElement> generatingElements = new ArrayList<>();
+    
+    // Last PDF generated, so regenerating after adding elements only appends them
+    private GeneratedOutput lastOutput;
+    
+    // Table import in progress, if any
+    private TableImportTask tableImportTask;
+    
+    // Project file the element list was opened from or last saved to
+    private ProjectFile currentProject;
+    
+    // Runs direct conversions off the EDT, keeping small files ahead of huge ones.
+    // Created on first use so its worker threads don't slow down startup.
+    private ConversionScheduler conversionScheduler;
+    
+    // Whether the converter classes have been warmed up in the background
+    private boolean convertersPreloaded = false;
+    
     public pdfwithfunc() {
         pdfElements = new ArrayList<>();
         setupUI();
     }
     
     private void setupUI() {
-        setTitle("PDF Generator & Converter");
+        setTitle(TITLE);
         setSize(1000, 700);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLayout(new BorderLayout(10, 10));
@@ -99,6 +118,13 @@ public class pdfwithfunc extends JFrame {
         
         panel.add(tabbedPane, BorderLayout.CENTER);
         
+        // POI is only loaded once the user heads for the converter
+        tabbedPane.addChangeListener(e -> {
+            if (tabbedPane.getSelectedIndex() == 3) {
+                preloadConverters();
+            }
+        });
+        
         // Add buttons at bottom
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
         
@@ -158,11 +184,13 @@ public class pdfwithfunc extends JFrame {
         JButton removeRowButton = new JButton("Remove Row");
         JButton addColumnButton = new JButton("Add Column");
         JButton removeColumnButton = new JButton("Remove Column");
+        JButton importButton = new JButton("Import...");
         
         controlPanel.add(addRowButton);
         controlPanel.add(removeRowButton);
         controlPanel.add(addColumnButton);
         controlPanel.add(removeColumnButton);
+        controlPanel.add(importButton);
         
         // Create table
         String[] columns = {"Column 1", "Column 2", "Column 3"};
@@ -180,6 +208,7 @@ public class pdfwithfunc extends JFrame {
         
         // Button actions
         addRowButton.addActionListener(e -> tableModel.addRow(new Object[tableModel.getColumnCount()]));
+        importButton.addActionListener(e -> importTable());
         removeRowButton.addActionListener(e -> {
             int row = dataTable.getSelectedRow();
             if (row >= 0) tableModel.removeRow(row);
@@ -218,6 +247,33 @@ public class pdfwithfunc extends JFrame {
         return panel;
     }
     
+    /**
+     * Loads a CSV, TSV or XLSX file into the table on a background task
+     */
+    private void importTable() {
+        if (tableImportTask != null) {
+            JOptionPane.showMessageDialog(this, "A table is already being imported!", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
+            public boolean accept(File f) {
+                return f.isDirectory() || TableImportTask.canImport(f);
+            }
+            public String getDescription() {
+                return "Table Files (*.csv, *.tsv, *.txt, *.xlsx)";
+            }
+        });
+        
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            TableImportTask task = new TableImportTask(this, fileChooser.getSelectedFile(), tableModel);
+            tableImportTask = task;
+            task.setOnFinished(() -> tableImportTask = null);
+            task.start();
+        }
+    }
+    
     private JPanel createImagePanel() {
         JPanel panel = new JPanel(new BorderLayout(10, 10));
         panel.setBorder(new EmptyBorder(10, 10, 10, 10));
@@ -272,6 +328,23 @@ public class pdfwithfunc extends JFrame {
         
         panel.add(pathPanel, BorderLayout.NORTH);
         
+        // Optional selection - unselected slides, sheets and rows are never parsed
+        JPanel selectionPanel = new JPanel(new GridLayout(3, 2, 5, 5));
+        selectionPanel.setBorder(BorderFactory.createTitledBorder("Convert only (optional)"));
+        slideSelectionField = new JTextField();
+        sheetSelectionField = new JTextField();
+        rowSelectionField = new JTextField();
+        selectionPanel.add(new JLabel("Slides (e.g. 10-14, 20):"));
+        selectionPanel.add(slideSelectionField);
+        selectionPanel.add(new JLabel("Sheets (names or numbers):"));
+        selectionPanel.add(sheetSelectionField);
+        selectionPanel.add(new JLabel("Rows (e.g. 1-500):"));
+        selectionPanel.add(rowSelectionField);
+        
+        JPanel selectionWrapper = new JPanel(new BorderLayout());
+        selectionWrapper.add(selectionPanel, BorderLayout.NORTH);
+        panel.add(selectionWrapper, BorderLayout.CENTER);
+        
         // Add convert button
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         JButton convertButton = new JButton("Convert & Add to PDF");
@@ -303,6 +376,29 @@ public class pdfwithfunc extends JFrame {
         JScrollPane listScrollPane = new JScrollPane(elementsList);
         panel.add(listScrollPane, BorderLayout.CENTER);
         
+        // Page readout; pdfElements is always changed before the list model, so its events are the cue
+        pageCountLabel = new JLabel(" ");
+        layoutCache = new LayoutCache(this::showLayout);
+        elementsListModel.addListDataListener(new javax.swing.event.ListDataListener() {
+            public void intervalAdded(javax.swing.event.ListDataEvent e) {
+                layoutChanged(e.getIndex0());
+            }
+            public void intervalRemoved(javax.swing.event.ListDataEvent e) {
+                layoutChanged(e.getIndex0());
+            }
+            public void contentsChanged(javax.swing.event.ListDataEvent e) {
+                layoutChanged(Math.max(0, e.getIndex0()));
+            }
+        });
+        elementsList.setCellRenderer(new DefaultListCellRenderer() {
+            public java.awt.Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                                   boolean isSelected, boolean cellHasFocus) {
+                String span = layoutCache.describeSpan(index);
+                return super.getListCellRendererComponent(list, span == null ? value : value + "  (" + span + ")",
+                    index, isSelected, cellHasFocus);
+            }
+        });
+        
         // Control buttons
         JPanel controlPanel = new JPanel(new GridLayout(4, 1, 5, 5));
         
@@ -326,7 +422,20 @@ public class pdfwithfunc extends JFrame {
         controlPanel.add(removeButton);
         controlPanel.add(generateButton);
         
-        panel.add(controlPanel, BorderLayout.SOUTH);
+        // Running header and page numbers for every page of the generated PDF
+        JPanel pageOptionsPanel = new JPanel(new BorderLayout(5, 5));
+        headerField = new JTextField();
+        headerField.setFont(new Font("Arial", Font.PLAIN, 12));
+        pageNumbersCheckBox = new JCheckBox("Page numbers (Page X of Y)");
+        pageOptionsPanel.add(new JLabel("Header:"), BorderLayout.WEST);
+        pageOptionsPanel.add(headerField, BorderLayout.CENTER);
+        pageOptionsPanel.add(pageNumbersCheckBox, BorderLayout.SOUTH);
+        
+        JPanel southPanel = new JPanel(new BorderLayout(5, 5));
+        southPanel.add(pageCountLabel, BorderLayout.NORTH);
+        southPanel.add(pageOptionsPanel, BorderLayout.CENTER);
+        southPanel.add(controlPanel, BorderLayout.SOUTH);
+        panel.add(southPanel, BorderLayout.SOUTH);
         
         return panel;
     }
@@ -336,14 +445,24 @@ public class pdfwithfunc extends JFrame {
         
         JMenu fileMenu = new JMenu("File");
         JMenuItem newItem = new JMenuItem("New");
+        JMenuItem openItem = new JMenuItem("Open Project...");
+        JMenuItem saveItem = new JMenuItem("Save Project");
+        JMenuItem saveAsItem = new JMenuItem("Save Project As...");
         JMenuItem directConvertItem = new JMenuItem("Direct Convert to PDF");
         JMenuItem exitItem = new JMenuItem("Exit");
         
-        newItem.addActionListener(e -> clearAllElements());
+        newItem.addActionListener(e -> newDocument());
+        openItem.addActionListener(e -> openProject());
+        saveItem.addActionListener(e -> saveProject(false));
+        saveAsItem.addActionListener(e -> saveProject(true));
         directConvertItem.addActionListener(e -> directConvertToPDF());
         exitItem.addActionListener(e -> System.exit(0));
         
         fileMenu.add(newItem);
+        fileMenu.add(openItem);
+        fileMenu.add(saveItem);
+        fileMenu.add(saveAsItem);
+        fileMenu.addSeparator();
         fileMenu.add(directConvertItem);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
@@ -414,14 +533,24 @@ public class pdfwithfunc extends JFrame {
                 return;
             }
             
+            ConversionSelection selection = currentSelection();
+            
             elementCounter++;
-            ConvertedFileElement element = new ConvertedFileElement(filePath);
+            ConvertedFileElement element = new ConvertedFileElement(filePath, selection, new ConversionBudget());
             pdfElements.add(element);
-            elementsListModel.addElement(String.format("%d. Converted: %s", elementCounter, file.getName()));
+            element.startPreparing();
+            String display = String.format("%d. Converted: %s", elementCounter, file.getName());
+            if (!selection.isAll()) {
+                display += " [" + selection.getDescription() + "]";
+            }
+            elementsListModel.addElement(display);
             fileConverterPathField.setText("");
             JOptionPane.showMessageDialog(this, "File converted and added!", 
                 "Success", JOptionPane.INFORMATION_MESSAGE);
             
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), 
+                "Warning", JOptionPane.WARNING_MESSAGE);
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, 
                 "Error converting file: " + e.getMessage(), 
@@ -430,7 +559,24 @@ public class pdfwithfunc extends JFrame {
         }
     }
     
+    /**
+     * Slide, sheet and row selection from the Convert File tab
+     */
+    private ConversionSelection currentSelection() {
+        return new ConversionSelection(slideSelectionField.getText(), 
+            sheetSelectionField.getText(), rowSelectionField.getText());
+    }
+    
     private void directConvertToPDF() {
+        // Direct conversion honors the selection entered in the Convert File tab
+        ConversionSelection selection;
+        try {
+            selection = currentSelection();
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Select File to Convert to PDF");
         fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
@@ -462,30 +608,133 @@ public class pdfwithfunc extends JFrame {
                     outputPath += ".pdf";
                 }
                 
+                scheduleConversion(inputFile, outputPath, selection);
+            }
+        }
+    }
+    
+    /**
+     * Queues a direct conversion on the scheduler and reports the outcome
+     * back on the EDT once the job has run
+     */
+    private void scheduleConversion(File inputFile, String outputPath, ConversionSelection selection) {
+        JDialog progressDialog = new JDialog(this, "Converting " + inputFile.getName(), false);
+        ConversionProgressListener progressWindow = showConversionProgress(progressDialog);
+        if (conversionScheduler == null) {
+            conversionScheduler = new ConversionScheduler();
+        }
+        try {
+            conversionScheduler.submit(inputFile, () -> {
                 try {
-                    convertFileToPDF(inputFile.getAbsolutePath(), outputPath);
-                    JOptionPane.showMessageDialog(this, 
+                    convertFileToPDF(inputFile.getAbsolutePath(), outputPath, selection, 
+                        new ConversionBudget(), progressWindow);
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, 
                         "File converted successfully!\n" + outputPath, 
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
+                        "Success", JOptionPane.INFORMATION_MESSAGE));
+                } catch (ConversionBudgetExceededException e) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, 
+                        "Conversion of " + inputFile.getName() + " was stopped:\n" + e.getMessage(), 
+                        "Conversion Stopped", JOptionPane.WARNING_MESSAGE));
                 } catch (Exception e) {
-                    JOptionPane.showMessageDialog(this, 
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, 
                         "Error converting file: " + e.getMessage(), 
-                        "Error", JOptionPane.ERROR_MESSAGE);
+                        "Error", JOptionPane.ERROR_MESSAGE));
                     e.printStackTrace();
+                } finally {
+                    // Closes the window whether or not the output was ever opened
+                    SwingUtilities.invokeLater(progressDialog::dispose);
                 }
-            }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            progressDialog.dispose();
+            JOptionPane.showMessageDialog(this, "Error converting file: " + e.getMessage(), 
+                "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
     
-    private void convertFileToPDF(String inputPath, String outputPath) throws Exception {
+    /**
+     * Shows the given non-modal window and has it follow a conversion until
+     * its output is closed
+     */
+    private ConversionProgressListener showConversionProgress(JDialog dialog) {
+        JLabel statusLabel = new JLabel("Waiting to start...");
+        statusLabel.setBorder(new EmptyBorder(10, 15, 10, 15));
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        
+        dialog.add(statusLabel, BorderLayout.CENTER);
+        dialog.add(progressBar, BorderLayout.SOUTH);
+        dialog.setSize(380, 110);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+        
+        return new ConversionProgressListener() {
+            public void progressed(int pagesDone, long bytesWritten, long etaMillis) {
+                String eta = etaMillis < 0 ? "" : String.format(", about %d s left", etaMillis / 1000 + 1);
+                String status = String.format("%d pages done, %d KB written%s", pagesDone, bytesWritten / 1024, eta);
+                SwingUtilities.invokeLater(() -> statusLabel.setText(status));
+            }
+            
+            public void finished(int pages, long bytesWritten) {
+                SwingUtilities.invokeLater(dialog::dispose);
+            }
+        };
+    }
+    
+    /**
+     * Converts a whole file without progress reporting; also how LoadRunner drives conversions
+     */
+    static void convertFileToPDF(String inputPath, String outputPath) throws Exception {
+        convertFileToPDF(inputPath, outputPath, ConversionSelection.ALL, new ConversionBudget(), null);
+    }
+    
+    /**
+     * Converts a file into its own PDF, with bookmarks for its headings and,
+     * when it is long, a contents page. With a listener, the output is written
+     * progressively: each finished page is flushed and reported right away.
+     */
+    @SuppressWarnings("try")
+    static void convertFileToPDF(String inputPath, String outputPath, ConversionSelection selection, 
+                                 ConversionBudget budget, ConversionProgressListener listener) throws Exception {
+        PdfMetrics.Timer generateTimer = PdfMetrics.time("generate.convert");
         Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, new FileOutputStream(outputPath));
-        document.open();
-        
-        ConvertedFileElement element = new ConvertedFileElement(inputPath);
-        element.addToDocument(document);
-        
-        document.close();
+        OutputStream out = new FileOutputStream(outputPath);
+        int pages;
+        try {
+            ProgressiveOutput progress = null;
+            if (listener != null) {
+                progress = new ProgressiveOutput(out, listener);
+                out = progress.getStream();
+            }
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            if (progress != null) {
+                progress.attach(writer);
+            }
+            DocumentOutline outline = new DocumentOutline();
+            outline.attach(writer);
+            document.open();
+            
+            ConvertedFileElement element = new ConvertedFileElement(inputPath, selection, budget);
+            element.progress = progress;
+            element.outline = outline;
+            try (PdfMetrics.Timer timer = PdfMetrics.time("layout.stream")) {
+                // Parsing runs alongside on its own thread and is timed there
+                element.streamInto(document);
+            }
+            pages = writer.getPageNumber();
+            pages += outline.addTableOfContents(document, writer);
+            try (PdfMetrics.Timer timer = PdfMetrics.time("write")) {
+                document.close();
+            }
+        } catch (Exception e) {
+            // Don't leave a truncated PDF behind
+            out.close();
+            new File(outputPath).delete();
+            throw e;
+        }
+        generateTimer.close();
+        PdfMetrics.documentWritten(1, pages, new File(outputPath).length());
     }
     
     private void addElementToPDF(int tabIndex) {
@@ -498,6 +747,7 @@ public class pdfwithfunc extends JFrame {
                 if (!text.isEmpty()) {
                     TextElement textElement = new TextElement(title, text);
                     pdfElements.add(textElement);
+                    textElement.startPreparing();
                     String display = title.isEmpty() ? 
                         String.format("%d. Text: %s...", elementCounter, text.substring(0, Math.min(30, text.length()))) :
                         String.format("%d. Title: %s", elementCounter, title);
@@ -514,6 +764,7 @@ public class pdfwithfunc extends JFrame {
                 if (tableModel.getRowCount() > 0 && tableModel.getColumnCount() > 0) {
                     TableElement tableElement = new TableElement(tableModel);
                     pdfElements.add(tableElement);
+                    tableElement.startPreparing();
                     elementsListModel.addElement(String.format("%d. Table: %dx%d", 
                         elementCounter, tableModel.getRowCount(), tableModel.getColumnCount()));
                     JOptionPane.showMessageDialog(this, "Table element added!", "Success", JOptionPane.INFORMATION_MESSAGE);
@@ -527,6 +778,7 @@ public class pdfwithfunc extends JFrame {
                 if (!imagePath.isEmpty()) {
                     ImageElement imageElement = new ImageElement(imagePath);
                     pdfElements.add(imageElement);
+                    imageElement.startPreparing();
                     String fileName = new File(imagePath).getName();
                     elementsListModel.addElement(String.format("%d. Image: %s", elementCounter, fileName));
                     imagePathField.setText("");
@@ -545,6 +797,23 @@ public class pdfwithfunc extends JFrame {
         }
     }
     
+    private void layoutChanged(int firstChanged) {
+        layoutCache.update(pdfElements, firstChanged);
+        showLayout();
+    }
+    
+    private void showLayout() {
+        if (pdfElements.isEmpty()) {
+            pageCountLabel.setText(" ");
+        } else {
+            int pages = layoutCache.getPageCount();
+            pageCountLabel.setText(layoutCache.isComplete()
+                ? String.format("About %d page%s", pages, pages == 1 ? "" : "s")
+                : String.format("At least %d page%s (measuring...)", pages, pages == 1 ? "" : "s"));
+        }
+        elementsList.repaint();
+    }
+    
     private void moveElement(int direction) {
         int index = elementsList.getSelectedIndex();
         if (index < 0) {
@@ -567,14 +836,119 @@ public class pdfwithfunc extends JFrame {
     private void removeSelectedElement() {
         int index = elementsList.getSelectedIndex();
         if (index >= 0) {
-            pdfElements.remove(index);
+            discard(pdfElements.remove(index));
             elementsListModel.remove(index);
         } else {
             JOptionPane.showMessageDialog(this, "Please select an element to remove!", "Warning", JOptionPane.WARNING_MESSAGE);
         }
     }
     
+    private void newDocument() {
+        clearAllElements();
+        currentProject = null;
+        setTitle(TITLE);
+    }
+    
+    private void openProject() {
+        JFileChooser fileChooser = projectChooser();
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        
+        try {
+            // Only the index is read here; element contents load when the PDF is generated
+            ProjectFile project = ProjectFile.open(fileChooser.getSelectedFile());
+            clearAllElements();
+            pdfElements.addAll(project.getElements());
+            for (String label : project.getLabels()) {
+                elementsListModel.addElement(label);
+            }
+            elementCounter = pdfElements.size();
+            currentProject = project;
+            setTitle(TITLE + " - " + project.getFile().getName());
+            
+            List<String> changed = project.changedSources();
+            if (!changed.isEmpty()) {
+                JOptionPane.showMessageDialog(this, 
+                    "These files have changed since the project was saved; the PDF will show them as they are now:\n" 
+                    + String.join("\n", changed), 
+                    "Project Opened", JOptionPane.WARNING_MESSAGE);
+            }
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error opening project: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void saveProject(boolean askForFile) {
+        try {
+            if (currentProject != null && !askForFile) {
+                // Appends only what was added since the last save
+                currentProject.save(pdfElements, listLabels());
+                showSaveWarnings(currentProject);
+                return;
+            }
+            
+            JFileChooser fileChooser = projectChooser();
+            fileChooser.setSelectedFile(new File("document" + ProjectFile.EXTENSION));
+            if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            String filename = fileChooser.getSelectedFile().getAbsolutePath();
+            if (!filename.toLowerCase().endsWith(ProjectFile.EXTENSION)) {
+                filename += ProjectFile.EXTENSION;
+            }
+            
+            // Only becomes the open project once it has been written
+            ProjectFile project = ProjectFile.saveAs(new File(filename), pdfElements, listLabels());
+            currentProject = project;
+            setTitle(TITLE + " - " + project.getFile().getName());
+            showSaveWarnings(project);
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error saving project: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void showSaveWarnings(ProjectFile project) {
+        if (!project.getWarnings().isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Project saved, but:\n" + String.join("\n", project.getWarnings()), 
+                "Project Saved", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+    
+    private List<String> listLabels() {
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < elementsListModel.size(); i++) {
+            labels.add(elementsListModel.get(i));
+        }
+        return labels;
+    }
+    
+    private JFileChooser projectChooser() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
+            public boolean accept(File f) {
+                return f.isDirectory() || f.getName().toLowerCase().endsWith(ProjectFile.EXTENSION);
+            }
+            public String getDescription() {
+                return "PDF Generator Projects (*" + ProjectFile.EXTENSION + ")";
+            }
+        });
+        return fileChooser;
+    }
+    
+    /**
+     * Stops an element's preparation, unless the PDF being generated still needs it
+     */
+    private void discard(PDFElement element) {
+        if (!generatingElements.contains(element)) {
+            element.discard();
+        }
+    }
+    
     private void clearAllElements() {
+        for (PDFElement element : pdfElements) {
+            discard(element);
+        }
         pdfElements.clear();
         elementsListModel.clear();
         elementCounter = 0;
@@ -589,6 +963,10 @@ public class pdfwithfunc extends JFrame {
             JOptionPane.showMessageDialog(this, "Please add some elements first!", "Warning", JOptionPane.WARNING_MESSAGE);
             return;
         }
+        if (generationTask != null) {
+            JOptionPane.showMessageDialog(this, "A PDF is already being generated!", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
         
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Save PDF");
@@ -601,32 +979,37 @@ public class pdfwithfunc extends JFrame {
                 filename += ".pdf";
             }
             
-            try {
-                createPDFDocument(filename);
-                JOptionPane.showMessageDialog(this, 
-                    "PDF generated successfully!\n" + filename, 
-                    "Success", 
-                    JOptionPane.INFORMATION_MESSAGE);
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(this, 
-                    "Error generating PDF: " + e.getMessage(), 
-                    "Error", 
-                    JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
-            }
+            startGeneration(new File(filename));
         }
     }
     
-    private void createPDFDocument(String filename) throws Exception {
-        Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, new FileOutputStream(filename));
-        document.open();
-        
-        for (PDFElement element : pdfElements) {
-            element.addToDocument(document);
+    /**
+     * Generates the PDF on a background task; the window stays usable meanwhile
+     */
+    private void startGeneration(File output) {
+        PdfGenerationTask task = new PdfGenerationTask(this, output);
+        task.setHeaderFooter(headerField.getText(), pageNumbersCheckBox.isSelected());
+        // Numbered pages can't be appended to; their total would go stale
+        boolean appendable = !task.hasHeaderFooter();
+        int alreadyWritten = lastOutput != null && appendable ? lastOutput.elementsAlreadyIn(output, pdfElements) : 0;
+        for (int i = 0; i < pdfElements.size(); i++) {
+            // Anything not yet preparing starts now, alongside the rest
+            if (i >= alreadyWritten) {
+                pdfElements.get(i).startPreparing();
+            }
+            task.add(elementsListModel.get(i), pdfElements.get(i)::addToDocument);
         }
-        
-        document.close();
+        task.setAlreadyWritten(alreadyWritten);
+        
+        List<PDFElement> generated = new ArrayList<>(pdfElements);
+        generationTask = task;
+        generatingElements = generated;
+        task.setOnFinished(() -> {
+            generationTask = null;
+            generatingElements = new ArrayList<>();
+            lastOutput = task.isSucceeded() && appendable ? new GeneratedOutput(output, generated) : null;
+        });
+        task.start();
     }
     
     private void showAboutDialog() {
@@ -640,427 +1023,32 @@ public class pdfwithfunc extends JFrame {
             JOptionPane.INFORMATION_MESSAGE);
     }
     
-    // Inner classes for PDF elements
-    private abstract class PDFElement {
-        abstract void addToDocument(Document document) throws Exception;
-    }
-    
-    private class TextElement extends PDFElement {
-        String title;
-        String text;
-        
-        TextElement(String title, String text) {
-            this.title = title;
-            this.text = text;
-        }
-        
-        void addToDocument(Document document) throws Exception {
-            if (!title.isEmpty()) {
-                com.itextpdf.text.Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 16, BaseColor.DARK_GRAY);
-                Paragraph titlePara = new Paragraph(title, titleFont);
-                titlePara.setSpacingAfter(10f);
-                document.add(titlePara);
-            }
-            
-            com.itextpdf.text.Font textFont = FontFactory.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
-            Paragraph textPara = new Paragraph(text, textFont);
-            textPara.setAlignment(Element.ALIGN_JUSTIFIED);
-            textPara.setSpacingAfter(15f);
-            document.add(textPara);
-        }
+    /**
+     * Loads the Office converters on a background thread, once, so the first
+     * conversion doesn't wait for POI and its schemas to load
+     */
+    private void preloadConverters() {
+        if (convertersPreloaded) return;
+        convertersPreloaded = true;
+        
+        Thread loader = new Thread(OfficeConverter::preload, "converter-preload");
+        loader.setDaemon(true);
+        loader.setPriority(Thread.MIN_PRIORITY);
+        loader.start();
     }
     
-    private class TableElement extends PDFElement {
-        Object[][] data;
-        String[] headers;
-        
-        TableElement(DefaultTableModel model) {
-            int rows = model.getRowCount();
-            int cols = model.getColumnCount();
-            
-            headers = new String[cols];
-            for (int i = 0; i < cols; i++) {
-                headers[i] = model.getColumnName(i);
-            }
-            
-            data = new Object[rows][cols];
-            for (int i = 0; i < rows; i++) {
-                for (int j = 0; j < cols; j++) {
-                    data[i][j] = model.getValueAt(i, j);
-                }
-            }
-        }
-        
-        void addToDocument(Document document) throws Exception {
-            PdfPTable table = new PdfPTable(headers.length);
-            table.setWidthPercentage(100);
-            table.setSpacingBefore(10f);
-            table.setSpacingAfter(15f);
-            
-            // Add headers
-            com.itextpdf.text.Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, BaseColor.WHITE);
-            for (String header : headers) {
-                PdfPCell cell = new PdfPCell(new Phrase(header, headerFont));
-                cell.setBackgroundColor(BaseColor.DARK_GRAY);
-                cell.setPadding(5f);
-                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-                table.addCell(cell);
-            }
-            
-            // Add data
-            com.itextpdf.text.Font dataFont = FontFactory.getFont(FontFactory.HELVETICA, 10, BaseColor.BLACK);
-            for (Object[] row : data) {
-                for (Object cell : row) {
-                    String cellText = cell == null ? "" : cell.toString();
-                    PdfPCell dataCell = new PdfPCell(new Phrase(cellText, dataFont));
-                    dataCell.setPadding(5f);
-                    table.addCell(dataCell);
-                }
-            }
-            
-            document.add(table);
-        }
-    }
-    
-    private class ImageElement extends PDFElement {
-        String path;
-        
-        ImageElement(String path) {
-            this.path = path;
-        }
-        
-        void addToDocument(Document document) throws Exception {
-            Image image;
-            if (path.startsWith("http://") || path.startsWith("https://")) {
-                image = Image.getInstance(new java.net.URL(path));
-            } else {
-                image = Image.getInstance(path);
-            }
-            
-            image.scaleToFit(500f, 400f);
-            image.setAlignment(Element.ALIGN_CENTER);
-            image.setSpacingBefore(10f);
-            image.setSpacingAfter(15f);
-            document.add(image);
-        }
-    }
-    
-    private class ConvertedFileElement extends PDFElement {
-        String filePath;
-        
-        ConvertedFileElement(String filePath) {
-            this.filePath = filePath;
-        }
-        
-        void addToDocument(Document document) throws Exception {
-            String fileName = filePath.toLowerCase();
-            
-            if (fileName.endsWith(".txt")) {
-                convertTxtToPDF(document);
-            } else if (fileName.endsWith(".docx")) {
-                convertDocxToPDF(document);
-            } else if (fileName.endsWith(".doc")) {
-                convertDocToPDF(document);
-            } else if (fileName.endsWith(".xlsx")) {
-                convertXlsxToPDF(document);
-            } else if (fileName.endsWith(".xls")) {
-                convertXlsToPDF(document);
-            } else if (fileName.endsWith(".pptx")) {
-                convertPptxToPDF(document);
-            } else {
-                throw new Exception("Unsupported file type");
-            }
-        }
-        
-        private void convertTxtToPDF(Document document) throws Exception {
-            // Read text file
-            BufferedReader reader = new BufferedReader(new FileReader(filePath));
-            StringBuilder content = new StringBuilder();
-            String line;
-            
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
-            }
-            reader.close();
-            
-            // Add to PDF
-            com.itextpdf.text.Font font = FontFactory.getFont(FontFactory.COURIER, 10, BaseColor.BLACK);
-            Paragraph para = new Paragraph(content.toString(), font);
-            para.setSpacingAfter(15f);
-            document.add(para);
-        }
-        
-        private void convertDocxToPDF(Document document) throws Exception {
-            FileInputStream fis = new FileInputStream(filePath);
-            XWPFDocument docx = new XWPFDocument(fis);
-            
-            // Add title
-            com.itextpdf.text.Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.DARK_GRAY);
-            Paragraph title = new Paragraph("Document: " + new File(filePath).getName(), titleFont);
-            title.setSpacingAfter(10f);
-            document.add(title);
-            
-            // Extract paragraphs
-            List<XWPFParagraph> paragraphs = docx.getParagraphs();
-            com.itextpdf.text.Font textFont = FontFactory.getFont(FontFactory.HELVETICA, 11, BaseColor.BLACK);
-            
-            for (XWPFParagraph para : paragraphs) {
-                String text = para.getText().trim();
-                if (!text.isEmpty()) {
-                    Paragraph pdfPara = new Paragraph(text, textFont);
-                    pdfPara.setSpacingAfter(8f);
-                    document.add(pdfPara);
-                }
-            }
-            
-            // Extract tables
-            List<XWPFTable> tables = docx.getTables();
-            for (XWPFTable table : tables) {
-                convertWordTableToPDF(document, table);
-            }
-            
-            docx.close();
-            fis.close();
-        }
-        
-        private void convertWordTableToPDF(Document document, XWPFTable wordTable) throws Exception {
-            List<XWPFTableRow> rows = wordTable.getRows();
-            if (rows.isEmpty()) return;
-            
-            int numCols = rows.get(0).getTableCells().size();
-            PdfPTable pdfTable = new PdfPTable(numCols);
-            pdfTable.setWidthPercentage(100);
-            pdfTable.setSpacingBefore(10f);
-            pdfTable.setSpacingAfter(10f);
-            
-            com.itextpdf.text.Font cellFont = FontFactory.getFont(FontFactory.HELVETICA, 9, BaseColor.BLACK);
-            
-            for (XWPFTableRow row : rows) {
-                for (XWPFTableCell cell : row.getTableCells()) {
-                    String cellText = cell.getText();
-                    PdfPCell pdfCell = new PdfPCell(new Phrase(cellText, cellFont));
-                    pdfCell.setPadding(4f);
-                    pdfTable.addCell(pdfCell);
-                }
-            }
-            
-            document.add(pdfTable);
-        }
-        
-        private void convertDocToPDF(Document document) throws Exception {
-            // Note: .doc support is limited - newer .docx format is recommended
-            com.itextpdf.text.Font font = FontFactory.getFont(FontFactory.HELVETICA, 11, BaseColor.BLACK);
-            Paragraph para = new Paragraph(
-                "Legacy .doc format has limited support. Please convert to .docx for better results.\n" +
-                "File: " + new File(filePath).getName(), 
-                font
-            );
-            para.setSpacingAfter(15f);
-            document.add(para);
-        }
-        
-        private void convertXlsxToPDF(Document document) throws Exception {
-            FileInputStream fis = new FileInputStream(filePath);
-            XSSFWorkbook workbook = new XSSFWorkbook(fis);
-            
-            // Add title
-            com.itextpdf.text.Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.DARK_GRAY);
-            Paragraph title = new Paragraph("Spreadsheet: " + new File(filePath).getName(), titleFont);
-            title.setSpacingAfter(10f);
-            document.add(title);
-            
-            // Process each sheet
-            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-                Sheet sheet = workbook.getSheetAt(i);
-                
-                // Add sheet name
-                com.itextpdf.text.Font sheetFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.BLUE);
-                Paragraph sheetTitle = new Paragraph("Sheet: " + sheet.getSheetName(), sheetFont);
-                sheetTitle.setSpacingBefore(10f);
-                sheetTitle.setSpacingAfter(8f);
-                document.add(sheetTitle);
-                
-                // Find max columns
-                int maxCols = 0;
-                for (Row row : sheet) {
-                    if (row.getLastCellNum() > maxCols) {
-                        maxCols = row.getLastCellNum();
-                    }
-                }
-                
-                if (maxCols == 0) continue;
-                
-                // Create table
-                PdfPTable table = new PdfPTable(maxCols);
-                table.setWidthPercentage(100);
-                table.setSpacingAfter(10f);
-                
-                com.itextpdf.text.Font cellFont = FontFactory.getFont(FontFactory.HELVETICA, 8, BaseColor.BLACK);
-                
-                // Add rows
-                int rowCount = 0;
-                for (Row row : sheet) {
-                    if (rowCount > 100) break; // Limit rows to prevent huge PDFs
-                    
-                    for (int j = 0; j < maxCols; j++) {
-                        Cell cell = row.getCell(j);
-                        String cellValue = "";
-                        
-                        if (cell != null) {
-                            switch (cell.getCellType()) {
-                                case STRING:
-                                    cellValue = cell.getStringCellValue();
-                                    break;
-                                case NUMERIC:
-                                    if (org.apache.poi.ss.usermodel.DateUtil.isCellDateFormatted(cell)) {
-                                        cellValue = cell.getDateCellValue().toString();
-                                    } else {
-                                        cellValue = String.valueOf(cell.getNumericCellValue());
-                                    }
-                                    break;
-                                case BOOLEAN:
-                                    cellValue = String.valueOf(cell.getBooleanCellValue());
-                                    break;
-                                case FORMULA:
-                                    cellValue = cell.getCellFormula();
-                                    break;
-                                default:
-                                    cellValue = "";
-                            }
-                        }
-                        
-                        PdfPCell pdfCell = new PdfPCell(new Phrase(cellValue, cellFont));
-                        pdfCell.setPadding(3f);
-                        table.addCell(pdfCell);
-                    }
-                    rowCount++;
-                }
-                
-                document.add(table);
-            }
-            
-            workbook.close();
-            fis.close();
-        }
-        
-        private void convertXlsToPDF(Document document) throws Exception {
-            FileInputStream fis = new FileInputStream(filePath);
-            HSSFWorkbook workbook = new HSSFWorkbook(fis);
-            
-            // Add title
-            com.itextpdf.text.Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.DARK_GRAY);
-            Paragraph title = new Paragraph("Spreadsheet: " + new File(filePath).getName(), titleFont);
-            title.setSpacingAfter(10f);
-            document.add(title);
-            
-            // Process each sheet (similar to xlsx)
-            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-                Sheet sheet = workbook.getSheetAt(i);
-                
-                com.itextpdf.text.Font sheetFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.BLUE);
-                Paragraph sheetTitle = new Paragraph("Sheet: " + sheet.getSheetName(), sheetFont);
-                sheetTitle.setSpacingBefore(10f);
-                sheetTitle.setSpacingAfter(8f);
-                document.add(sheetTitle);
-                
-                int maxCols = 0;
-                for (Row row : sheet) {
-                    if (row.getLastCellNum() > maxCols) {
-                        maxCols = row.getLastCellNum();
-                    }
-                }
-                
-                if (maxCols == 0) continue;
-                
-                PdfPTable table = new PdfPTable(maxCols);
-                table.setWidthPercentage(100);
-                table.setSpacingAfter(10f);
-                
-                com.itextpdf.text.Font cellFont = FontFactory.getFont(FontFactory.HELVETICA, 8, BaseColor.BLACK);
-                
-                int rowCount = 0;
-                for (Row row : sheet) {
-                    if (rowCount > 100) break;
-                    
-                    for (int j = 0; j < maxCols; j++) {
-                        Cell cell = row.getCell(j);
-                        String cellValue = "";
-                        
-                        if (cell != null) {
-                            switch (cell.getCellType()) {
-                                case STRING:
-                                    cellValue = cell.getStringCellValue();
-                                    break;
-                                case NUMERIC:
-                                    cellValue = String.valueOf(cell.getNumericCellValue());
-                                    break;
-                                case BOOLEAN:
-                                    cellValue = String.valueOf(cell.getBooleanCellValue());
-                                    break;
-                                default:
-                                    cellValue = "";
-                            }
-                        }
-                        
-                        PdfPCell pdfCell = new PdfPCell(new Phrase(cellValue, cellFont));
-                        pdfCell.setPadding(3f);
-                        table.addCell(pdfCell);
-                    }
-                    rowCount++;
-                }
-                
-                document.add(table);
-            }
-            
-            workbook.close();
-            fis.close();
-        }
-        
-        private void convertPptxToPDF(Document document) throws Exception {
-            FileInputStream fis = new FileInputStream(filePath);
-            XMLSlideShow ppt = new XMLSlideShow(fis);
-            
-            // Add title
-            com.itextpdf.text.Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.DARK_GRAY);
-            Paragraph title = new Paragraph("Presentation: " + new File(filePath).getName(), titleFont);
-            title.setSpacingAfter(10f);
-            document.add(title);
-            
-            // Process each slide
-            List<XSLFSlide> slides = ppt.getSlides();
-            com.itextpdf.text.Font slideFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.BLUE);
-            com.itextpdf.text.Font textFont = FontFactory.getFont(FontFactory.HELVETICA, 10, BaseColor.BLACK);
+    public static void main(String[] args) {
+        SwingUtilities.invokeLater(() -> {
+            new pdfwithfunc();
             
-            int slideNum = 1;
-            for (XSLFSlide slide : slides) {
-                // Add slide number
-                Paragraph slideTitle = new Paragraph("Slide " + slideNum, slideFont);
-                slideTitle.setSpacingBefore(15f);
-                slideTitle.setSpacingAfter(8f);
-                document.add(slideTitle);
-                
-                // Extract text from shapes
-                for (XSLFShape shape : slide.getShapes()) {
-                    if (shape instanceof XSLFTextShape) {
-                        XSLFTextShape textShape = (XSLFTextShape) shape;
-                        String text = textShape.getText();
-                        if (text != null && !text.trim().isEmpty()) {
-                            Paragraph para = new Paragraph(text.trim(), textFont);
-                            para.setSpacingAfter(5f);
-                            document.add(para);
-                        }
-                    }
-                }
-                
-                slideNum++;
+            // Training run for the class-data-sharing archive (see appcds.sh):
+            // report the startup time, load the converters too, then quit
+            if (Boolean.getBoolean("pdfgen.exitAfterStartup")) {
+                System.out.println("Window shown " + ManagementFactory.getRuntimeMXBean().getUptime() 
+                    + " ms after JVM start");
+                OfficeConverter.preload();
+                System.exit(0);
             }
-            
-            ppt.close();
-            fis.close();
-        }
-    }
-    
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new pdfwithfunc());
+        });
     }
 }